@@ -0,0 +1,46 @@
+package com.eviltosha.regexpy.benchmarks;
+
+import com.eviltosha.regexpy.Regex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/** Time of compiling the patterns, java.util.regex.Pattern is the baseline */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompileBenchmark {
+  @Param
+  public Workload workload;
+
+  /* the constructor is used rather than Regex.compile, which returns the cached instance */
+  @Benchmark
+  public Regex regexpy() {
+    return new Regex(workload.getPattern());
+  }
+
+  @Benchmark
+  public Regex regexpyCompiledDfa() {
+    Regex regex = new Regex(workload.getPattern());
+    regex.compileDfa(MatchBenchmark.MAX_DFA_STATES);
+    return regex;
+  }
+
+  @Benchmark
+  public Pattern jdk() {
+    return Pattern.compile(workload.getPattern());
+  }
+}
@@ -0,0 +1,103 @@
+package com.eviltosha.regexpy.benchmarks;
+
+import com.eviltosha.regexpy.Matcher;
+import com.eviltosha.regexpy.Regex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput of matching the whole inputs of the workload, java.util.regex.Pattern is the baseline. Each engine of
+ * regexpy has its own benchmark: the default one (lazy DFA, or backtracking for the patterns with group recalls),
+ * the eagerly compiled DFA and the generated class. The patterns which can't be compiled into DFA remain matched by
+ * the default engine in the latter two. Run with -prof gc for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+  static final int MAX_DFA_STATES = 10000;
+
+  @Param
+  public Workload workload;
+
+  private String[] myInputs;
+  private Matcher myMatcher;
+  private Matcher myCompiledDfaMatcher;
+  private Matcher myGeneratedClassMatcher;
+  private java.util.regex.Matcher myJdkMatcher;
+
+  @Setup
+  public void setUp() {
+    myInputs = workload.makeInputs();
+    myMatcher = new Regex(workload.getPattern()).matcher();
+    Regex compiledDfaRegex = new Regex(workload.getPattern());
+    compiledDfaRegex.compileDfa(MAX_DFA_STATES);
+    myCompiledDfaMatcher = compiledDfaRegex.matcher();
+    Regex generatedClassRegex = new Regex(workload.getPattern());
+    generatedClassRegex.generateClass(MAX_DFA_STATES);
+    myGeneratedClassMatcher = generatedClassRegex.matcher();
+    myJdkMatcher = Pattern.compile(workload.getPattern()).matcher("");
+    for (String input : myInputs) {
+      if (myMatcher.matches(input) != myJdkMatcher.reset(input).matches()) {
+        throw new IllegalStateException("regexpy and java.util.regex disagree on " + input);
+      }
+    }
+  }
+
+  /* each benchmark returns the number of matching inputs, so that nothing is optimized away */
+  @Benchmark
+  @OperationsPerInvocation(Workload.NUM_INPUTS)
+  public int regexpy() {
+    return countMatches(myMatcher);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workload.NUM_INPUTS)
+  public int regexpyCompiledDfa() {
+    return countMatches(myCompiledDfaMatcher);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workload.NUM_INPUTS)
+  public int regexpyGeneratedClass() {
+    return countMatches(myGeneratedClassMatcher);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workload.NUM_INPUTS)
+  public int jdk() {
+    int count = 0;
+    for (String input : myInputs) {
+      if (myJdkMatcher.reset(input).matches()) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  private int countMatches(Matcher matcher) {
+    int count = 0;
+    for (String input : myInputs) {
+      if (matcher.matches(input)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,113 @@
+package com.eviltosha.regexpy.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Patterns with the inputs they are matched against. The realistic ones are matched against a mix of matching and
+ * almost matching strings; the pathological ones make naive backtracking engines explore exponentially (or at least
+ * quadratically) many paths, or make the DFA blow up.
+ */
+public enum Workload {
+  EMAIL("[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,6}") {
+    @Override
+    String makeInput(Random random, boolean matching) {
+      String user = randomString(random, "abcdefghijklmnopqrstuvwxyz0123456789._", 3 + random.nextInt(12));
+      String domain = randomString(random, "abcdefghijklmnopqrstuvwxyz-", 3 + random.nextInt(10));
+      return user + (matching ? "@" : " at ") + domain + ".com";
+    }
+  },
+  LOG_LINE("(\\d{4})-(\\d{2})-(\\d{2}) (\\d{2}):(\\d{2}):(\\d{2}) (INFO|WARN|ERROR) \\[[^]]+\\] .*") {
+    @Override
+    String makeInput(Random random, boolean matching) {
+      String level = (matching ? new String[] {"INFO", "WARN", "ERROR"}[random.nextInt(3)] : "DEBUG");
+      return String.format("2016-%02d-%02d %02d:%02d:%02d %s [worker-%d] %s", 1 + random.nextInt(12),
+          1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60), level,
+          random.nextInt(16), randomString(random, "abcdefghijklmnopqrstuvwxyz ", 40 + random.nextInt(80)));
+    }
+  },
+  /** The closing tag recalls the name of the opening one, so it's matched by backtracking */
+  HTML_TAG("<([a-z][a-z0-9]*)( [a-z-]+=\"[^\"]*\")*>[^<]*</\\1>") {
+    @Override
+    String makeInput(Random random, boolean matching) {
+      String name = new String[] {"a", "div", "span", "h1", "td"}[random.nextInt(5)];
+      String text = randomString(random, "abcdefghijklmnopqrstuvwxyz ", 10 + random.nextInt(40));
+      return "<" + name + " class=\"item\" data-id=\"" + random.nextInt(1000) + "\">" + text + "</" +
+          (matching ? name : "p") + ">";
+    }
+  },
+  DATE("(0[1-9]|[1-2]\\d|3[01])/(0[1-9]|1[012])/(\\d{4})") {
+    @Override
+    String makeInput(Random random, boolean matching) {
+      return String.format("%02d/%02d/%d", 1 + random.nextInt(31), (matching ? 1 + random.nextInt(12) : 13),
+          1900 + random.nextInt(200));
+    }
+  },
+  IP_ADDRESS("(\\d{1,3}\\.){3}\\d{1,3}") {
+    @Override
+    String makeInput(Random random, boolean matching) {
+      return random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) +
+          (matching ? "." + random.nextInt(256) : "");
+    }
+  },
+  /** Exponentially many ways to split the run between the alternatives */
+  NESTED_ALTERNATIVES("(a|aa)*c") {
+    @Override
+    String makeInput(Random random, boolean matching) {
+      return repeat('a', 28) + (matching ? "c" : "b");
+    }
+  },
+  /** Exponentially many ways to split the run between the nested quantifiers */
+  NESTED_QUANTIFIERS("(x+x+)+y") {
+    @Override
+    String makeInput(Random random, boolean matching) {
+      return repeat('x', 20) + (matching ? "y" : "z");
+    }
+  },
+  /** The DFA has 2^11 states, every one of them is reached by a long random string */
+  DFA_BLOWUP("[ab]*a[ab]{10}") {
+    @Override
+    String makeInput(Random random, boolean matching) {
+      return randomString(random, "ab", 1000) + (matching ? "abbbbbbbbbb" : "bbbbbbbbbbb");
+    }
+  };
+
+  static final int NUM_INPUTS = 64;
+
+  private final String myPattern;
+
+  Workload(String pattern) {
+    myPattern = pattern;
+  }
+
+  public String getPattern() {
+    return myPattern;
+  }
+
+  /** Returns the inputs, every second of them matches; the same ones on every call */
+  public String[] makeInputs() {
+    Random random = new Random(42);
+    String[] inputs = new String[NUM_INPUTS];
+    for (int i = 0; i < inputs.length; ++i) {
+      inputs[i] = makeInput(random, (i % 2 == 0));
+    }
+    return inputs;
+  }
+
+  abstract String makeInput(Random random, boolean matching);
+
+  private static String randomString(Random random, String alphabet, int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; ++i) {
+      builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return builder.toString();
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder(count);
+    for (int i = 0; i < count; ++i) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+}
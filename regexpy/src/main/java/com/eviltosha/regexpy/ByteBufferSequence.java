@@ -0,0 +1,55 @@
+package com.eviltosha.regexpy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Region of a byte buffer viewed as CharSequence of ISO-8859-1 chars (each byte is a char), so single-byte encoded
+ * text (e.g. a memory-mapped file) is matched without decoding or copying. The region can be reset, so a scanner
+ * reuses a single instance for all the lines.
+ */
+class ByteBufferSequence implements CharSequence {
+  private ByteBuffer myBuffer;
+  private int myOffset;
+  private int myLength;
+
+  ByteBufferSequence(ByteBuffer buffer, int offset, int length) {
+    reset(buffer, offset, length);
+  }
+
+  void reset(ByteBuffer buffer, int offset, int length) {
+    if ((offset < 0) || (length < 0) || (offset > buffer.limit() - length)) {
+      throw new IndexOutOfBoundsException("Illegal region: offset " + offset + ", length " + length);
+    }
+    myBuffer = buffer;
+    myOffset = offset;
+    myLength = length;
+  }
+
+  @Override
+  public int length() { return myLength; }
+
+  @Override
+  public char charAt(int index) {
+    if ((index < 0) || (index >= myLength)) {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    return (char) (myBuffer.get(myOffset + index) & 0xFF);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if ((start < 0) || (start > end) || (end > myLength)) {
+      throw new IndexOutOfBoundsException("Illegal subsequence: " + start + ", " + end);
+    }
+    return new ByteBufferSequence(myBuffer, myOffset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    char[] chars = new char[myLength];
+    for (int i = 0; i < myLength; ++i) {
+      chars[i] = (char) (myBuffer.get(myOffset + i) & 0xFF);
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,46 @@
+package com.eviltosha.regexpy;
+
+/**
+ * Region of a char array viewed as CharSequence without copying, so the matchers can run directly over I/O
+ * buffers. The region can be reset to another array, so a matcher reuses a single instance.
+ */
+class CharArraySequence implements CharSequence {
+  private char[] myChars;
+  private int myOffset;
+  private int myLength;
+
+  CharArraySequence(char[] chars, int offset, int length) {
+    reset(chars, offset, length);
+  }
+
+  void reset(char[] chars, int offset, int length) {
+    if ((offset < 0) || (length < 0) || (offset > chars.length - length)) {
+      throw new IndexOutOfBoundsException("Illegal region: offset " + offset + ", length " + length);
+    }
+    myChars = chars;
+    myOffset = offset;
+    myLength = length;
+  }
+
+  @Override
+  public int length() { return myLength; }
+
+  @Override
+  public char charAt(int index) {
+    if ((index < 0) || (index >= myLength)) {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    return myChars[myOffset + index];
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if ((start < 0) || (start > end) || (end > myLength)) {
+      throw new IndexOutOfBoundsException("Illegal subsequence: " + start + ", " + end);
+    }
+    return new CharArraySequence(myChars, myOffset + start, end - start);
+  }
+
+  @Override
+  public String toString() { return new String(myChars, myOffset, myLength); }
+}
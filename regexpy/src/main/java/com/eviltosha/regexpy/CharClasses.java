@@ -0,0 +1,51 @@
+package com.eviltosha.regexpy;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Partition of the alphabet into classes of characters which are indistinguishable by the regex graph:
+ * every consuming Node either accepts all the characters of the class or none of them. Used by the automata
+ * engines to keep transition tables small.
+ */
+class CharClasses {
+  private static final int ASCII_SIZE = 128;
+
+  /* class i consists of chars from myBoundaries[i - 1] (inclusive) to myBoundaries[i] (exclusive) */
+  private int[] myBoundaries;
+  private int[] myAsciiClasses = new int[ASCII_SIZE];
+
+  CharClasses(Node[] nodes) {
+    Set<Integer> boundaries = new TreeSet<Integer>();
+    for (Node node : nodes) {
+      node.addCharBoundaries(boundaries);
+    }
+    boundaries.remove(0);
+    boundaries.remove(Character.MAX_VALUE + 1);
+    myBoundaries = new int[boundaries.size()];
+    int index = 0;
+    for (int boundary : boundaries) {
+      myBoundaries[index++] = boundary;
+    }
+    for (char ch = 0; ch < ASCII_SIZE; ++ch) {
+      myAsciiClasses[ch] = searchClass(ch);
+    }
+  }
+
+  int size() { return myBoundaries.length + 1; }
+
+  int classOf(char ch) {
+    return ((ch < ASCII_SIZE) ? myAsciiClasses[ch] : searchClass(ch));
+  }
+
+  /** Returns the first char of the class, it behaves exactly as any other char of the class */
+  char representative(int classId) {
+    return ((classId == 0) ? 0 : (char) myBoundaries[classId - 1]);
+  }
+
+  private int searchClass(char ch) {
+    int index = Arrays.binarySearch(myBoundaries, ch);
+    return ((index >= 0) ? (index + 1) : -(index + 1));
+  }
+}
@@ -0,0 +1,43 @@
+package com.eviltosha.regexpy;
+
+/** String operations over CharSequences, Strings are delegated to their own (intrinsified) implementations */
+class CharSequences {
+  private CharSequences() { }
+
+  /** Returns the position of the first occurrence of the literal in the sequence at from or later, or -1 */
+  static int indexOf(CharSequence seq, String literal, int from) {
+    if (seq instanceof String) {
+      return ((String) seq).indexOf(literal, from);
+    }
+    if (literal.length() == 0) {
+      return Math.min(Math.max(from, 0), seq.length());
+    }
+    char first = literal.charAt(0);
+    int last = seq.length() - literal.length();
+    for (int pos = Math.max(from, 0); pos <= last; ++pos) {
+      if ((seq.charAt(pos) == first) && regionMatches(seq, pos + 1, literal, 1, literal.length() - 1)) {
+        return pos;
+      }
+    }
+    return -1;
+  }
+
+  /** Whether the literal occurs in the sequence at the position */
+  static boolean startsWith(CharSequence seq, String literal, int pos) {
+    return ((pos >= 0) && (pos + literal.length() <= seq.length()) &&
+        regionMatches(seq, pos, literal, 0, literal.length()));
+  }
+
+  /** Whether the regions of the given length (which must be within the sequences) are equal */
+  static boolean regionMatches(CharSequence seq1, int pos1, CharSequence seq2, int pos2, int length) {
+    if ((seq1 instanceof String) && (seq2 instanceof String)) {
+      return ((String) seq1).regionMatches(pos1, (String) seq2, pos2, length);
+    }
+    for (int i = 0; i < length; ++i) {
+      if (seq1.charAt(pos1 + i) != seq2.charAt(pos2 + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,139 @@
+package com.eviltosha.regexpy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable set of chars matched by a char range Node, frozen from the parsed ranges: ASCII chars are looked up
+ * in a 128-bit bitmap, the other chars are searched by binary search among merged sorted intervals.
+ */
+class CharSet {
+  private static final int ASCII_SIZE = 128;
+  private static final Comparator<CharRange> BEGIN_ORDER = new Comparator<CharRange>() {
+    @Override
+    public int compare(CharRange range1, CharRange range2) {
+      return (range1.myBegin - range2.myBegin);
+    }
+  };
+
+  /* sets of the special char ranges (\d, \D, \s and \S) are shared by all the regexes */
+  static final CharSet DIGITS = new CharSet(Arrays.asList(new CharRange('0', '9')), false);
+  static final CharSet NON_DIGITS = new CharSet(Arrays.asList(new CharRange('0', '9')), true);
+  static final CharSet SPACES = new CharSet(spaceRanges(), false);
+  static final CharSet NON_SPACES = new CharSet(spaceRanges(), true);
+
+  /* bit i of myAscii[i / 64] is set if the set contains char i */
+  private final long[] myAscii = new long[ASCII_SIZE / 64];
+  /* interval i consists of chars from myIntervals[2 * i] to myIntervals[2 * i + 1] (inclusive) */
+  private final char[] myIntervals;
+
+  /** Constructs the set of chars within the (possibly overlapping) ranges, or the complement of it if negate */
+  CharSet(List<CharRange> ranges, boolean negate) {
+    List<CharRange> sortedRanges = new ArrayList<CharRange>(ranges);
+    Collections.sort(sortedRanges, BEGIN_ORDER);
+
+    /* merge overlapping and adjacent ranges */
+    char[] intervals = new char[2 * sortedRanges.size()];
+    int numIntervals = 0;
+    for (CharRange range : sortedRanges) {
+      if ((numIntervals > 0) && (range.myBegin <= intervals[2 * numIntervals - 1] + 1)) {
+        intervals[2 * numIntervals - 1] = (char) Math.max(intervals[2 * numIntervals - 1], range.myEnd);
+      } else {
+        intervals[2 * numIntervals] = range.myBegin;
+        intervals[2 * numIntervals + 1] = range.myEnd;
+        ++numIntervals;
+      }
+    }
+    intervals = Arrays.copyOf(intervals, 2 * numIntervals);
+    myIntervals = (negate ? complement(intervals) : intervals);
+    fillAscii();
+  }
+
+  /** Constructs the set of the sorted disjoint intervals, as returned by getIntervals (used for deserialization) */
+  CharSet(char[] intervals) {
+    myIntervals = intervals;
+    fillAscii();
+  }
+
+  char[] getIntervals() { return myIntervals; }
+
+  private void fillAscii() {
+    for (int i = 0; i < myIntervals.length; i += 2) {
+      for (int ch = myIntervals[i]; (ch <= myIntervals[i + 1]) && (ch < ASCII_SIZE); ++ch) {
+        myAscii[ch >>> 6] |= 1L << ch;
+      }
+    }
+  }
+
+  boolean contains(char ch) {
+    if (ch < ASCII_SIZE) {
+      return ((myAscii[ch >>> 6] & (1L << ch)) != 0);
+    }
+
+    /* find the last interval beginning not after ch */
+    int low = 0;
+    int high = myIntervals.length / 2 - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (myIntervals[2 * middle] <= ch) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return ((high >= 0) && (ch <= myIntervals[2 * high + 1]));
+  }
+
+  /** Adds the boundaries of the intervals: chars b - 1 and b differ in membership for each boundary b */
+  void addBoundaries(Set<Integer> boundaries) {
+    for (int i = 0; i < myIntervals.length; i += 2) {
+      boundaries.add((int) myIntervals[i]);
+      boundaries.add(myIntervals[i + 1] + 1);
+    }
+  }
+
+  /** Returns the intervals of the chars which are not within the given sorted disjoint intervals */
+  private static char[] complement(char[] intervals) {
+    char[] complement = new char[intervals.length + 2];
+    int size = 0;
+    int begin = 0;
+    for (int i = 0; i < intervals.length; i += 2) {
+      if (intervals[i] > begin) {
+        complement[size++] = (char) begin;
+        complement[size++] = (char) (intervals[i] - 1);
+      }
+      begin = intervals[i + 1] + 1;
+    }
+    if (begin <= Character.MAX_VALUE) {
+      complement[size++] = (char) begin;
+      complement[size++] = Character.MAX_VALUE;
+    }
+    return Arrays.copyOf(complement, size);
+  }
+
+  private static List<CharRange> spaceRanges() {
+    List<CharRange> ranges = new ArrayList<CharRange>();
+    for (char ch : new char[] {'\r', '\n', '\t', '\f', ' '}) {
+      ranges.add(new CharRange(ch, ch));
+    }
+    return ranges;
+  }
+}
+
+/** Range of chars from begin to end (inclusive) as parsed from the regex */
+class CharRange {
+  final char myBegin;
+  final char myEnd;
+
+  CharRange(char begin, char end) throws IllegalArgumentException {
+    if (begin > end) {
+      throw new IllegalArgumentException("Char range begin > end");
+    }
+    myBegin = begin;
+    myEnd = end;
+  }
+}
@@ -0,0 +1,272 @@
+package com.eviltosha.regexpy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal DFA compiled ahead of time from the regex graph. The states are numbered and the transitions are stored
+ * in a single table indexed by state and char class, so matching doesn't allocate anything and doesn't call
+ * any Node methods. Immutable, thus shared by all the Matchers of the Regex.
+ */
+class CompiledDfa {
+  private CharClasses myCharClasses;
+  private int myNumCharClasses;
+  /* transition from state s by char class c is stored at index s * myNumCharClasses + c */
+  private int[] myTransitions;
+  private boolean[] myAccepting;
+  private int myStartState;
+  /* state which can't lead to accepting state, -1 if there's no such state */
+  private int myDeadState;
+  /* accepting state which can't lead to non-accepting state, -1 if there's no such state */
+  private int myUniversalState;
+  private boolean myMatchesEmptyString;
+
+  private CompiledDfa() { }
+
+  /**
+   * Determinizes the automaton compatible graph and minimizes the result,
+   * returns null if the DFA has more than maxStates states (before minimization)
+   */
+  static CompiledDfa compile(Node startNode, Node endNode, Node[] nodes, int maxStates) {
+    CharClasses charClasses = new CharClasses(nodes);
+    int numCharClasses = charClasses.size();
+    NfaSimulator simulator = new NfaSimulator(startNode, endNode, nodes.length);
+    int[] endIndices = DfaState.endIndices(new Node[] {endNode}, nodes.length);
+
+    /* subset construction, states are numbered in the order of discovery */
+    List<DfaState> states = new ArrayList<DfaState>();
+    Map<DfaState, Integer> stateIds = new HashMap<DfaState, Integer>();
+    Node[] startNodes = DfaState.consumingNodes(simulator.startNodes(false));
+    int[] startAcceptedEnds = DfaState.acceptedEnds(simulator.startNodes(true), endIndices);
+    DfaState startState = new DfaState(startNodes, startAcceptedEnds, numCharClasses);
+    states.add(startState);
+    stateIds.put(startState, 0);
+    List<Integer> transitions = new ArrayList<Integer>();
+    for (int stateId = 0; stateId < states.size(); ++stateId) {
+      DfaState state = states.get(stateId);
+      for (int charClass = 0; charClass < numCharClasses; ++charClass) {
+        char ch = charClasses.representative(charClass);
+        Node[] nextNodes = DfaState.consumingNodes(simulator.stepNodes(state.getNodes(), ch, false));
+        int[] acceptedEnds = DfaState.acceptedEnds(simulator.stepNodes(state.getNodes(), ch, true), endIndices);
+        DfaState nextState = new DfaState(nextNodes, acceptedEnds, numCharClasses);
+        Integer nextStateId = stateIds.get(nextState);
+        if (nextStateId == null) {
+          if (states.size() == maxStates) {
+            return null;
+          }
+          nextStateId = states.size();
+          states.add(nextState);
+          stateIds.put(nextState, nextStateId);
+        }
+        transitions.add(nextStateId);
+      }
+    }
+
+    int numStates = states.size();
+    int[] transitionTable = new int[numStates * numCharClasses];
+    boolean[] accepting = new boolean[numStates];
+    for (int stateId = 0; stateId < numStates; ++stateId) {
+      accepting[stateId] = states.get(stateId).isAccepting();
+    }
+    for (int i = 0; i < transitionTable.length; ++i) {
+      transitionTable[i] = transitions.get(i);
+    }
+
+    CompiledDfa dfa = new CompiledDfa();
+    dfa.myCharClasses = charClasses;
+    dfa.myNumCharClasses = numCharClasses;
+    dfa.myMatchesEmptyString = startState.isAccepting();
+    dfa.minimize(transitionTable, accepting, numStates);
+    return dfa;
+  }
+
+  int getNumStates() { return myAccepting.length; }
+
+  CharClasses getCharClasses() { return myCharClasses; }
+
+  int transition(int state, int charClass) {
+    return myTransitions[state * myNumCharClasses + charClass];
+  }
+
+  int getDeadState() { return myDeadState; }
+
+  int getUniversalState() { return myUniversalState; }
+
+  boolean matches(CharSequence str) {
+    if (str.length() == 0) {
+      return myMatchesEmptyString;
+    }
+    int state = myStartState;
+    for (int strPos = 0; strPos < str.length(); ++strPos) {
+      state = myTransitions[state * myNumCharClasses + myCharClasses.classOf(str.charAt(strPos))];
+      if (state == myDeadState) {
+        return false;
+      }
+    }
+    return myAccepting[state];
+  }
+
+  /* stepwise matching of streamed input, the start state accepts the empty string */
+
+  int getStartState() { return myStartState; }
+
+  int nextState(int state, char ch) {
+    return myTransitions[state * myNumCharClasses + myCharClasses.classOf(ch)];
+  }
+
+  boolean isAccepting(int state) { return myAccepting[state]; }
+
+  /** Whether the match result is the same for all the continuations of the input leading to the state */
+  boolean isDecided(int state) {
+    return ((state == myDeadState) || (state == myUniversalState));
+  }
+
+  /**
+   * Hopcroft's minimization: starting from accepting/non-accepting partition, blocks of states are split until
+   * all the states of each block have transitions into the same blocks. The blocks become states of the minimal DFA.
+   */
+  private void minimize(int[] transitions, boolean[] accepting, int numStates) {
+    int numCharClasses = myNumCharClasses;
+
+    /* inverse transitions: predecessors of state s by char class c are preds[predStart[c * numStates + s] ...] */
+    int[] predStart = new int[numCharClasses * numStates + 1];
+    for (int state = 0; state < numStates; ++state) {
+      for (int charClass = 0; charClass < numCharClasses; ++charClass) {
+        ++predStart[charClass * numStates + transitions[state * numCharClasses + charClass] + 1];
+      }
+    }
+    for (int i = 1; i < predStart.length; ++i) {
+      predStart[i] += predStart[i - 1];
+    }
+    int[] preds = new int[numStates * numCharClasses];
+    int[] predFill = Arrays.copyOf(predStart, predStart.length - 1);
+    for (int state = 0; state < numStates; ++state) {
+      for (int charClass = 0; charClass < numCharClasses; ++charClass) {
+        preds[predFill[charClass * numStates + transitions[state * numCharClasses + charClass]]++] = state;
+      }
+    }
+
+    /*
+     * refinable partition: states of block b are elements[blockBegin[b] ... blockEnd[b]), states marked during
+     * splitting are moved to the front of the block, up to blockMarked[b]
+     */
+    int[] elements = new int[numStates];
+    int[] location = new int[numStates];
+    int[] blockOf = new int[numStates];
+    int[] blockBegin = new int[numStates];
+    int[] blockEnd = new int[numStates];
+    int[] blockMarked = new int[numStates];
+    int numBlocks = 0;
+    int numElements = 0;
+    for (int pass = 0; pass < 2; ++pass) {
+      boolean acceptingPass = (pass == 0);
+      int begin = numElements;
+      for (int state = 0; state < numStates; ++state) {
+        if (accepting[state] == acceptingPass) {
+          elements[numElements] = state;
+          location[state] = numElements++;
+          blockOf[state] = numBlocks;
+        }
+      }
+      if (numElements > begin) {
+        blockBegin[numBlocks] = begin;
+        blockEnd[numBlocks] = numElements;
+        blockMarked[numBlocks] = begin;
+        ++numBlocks;
+      }
+    }
+
+    int[] worklist = new int[numStates];
+    boolean[] inWorklist = new boolean[numStates];
+    int worklistSize = 0;
+    for (int block = 0; block < numBlocks; ++block) {
+      worklist[worklistSize++] = block;
+      inWorklist[block] = true;
+    }
+    int[] splitter = new int[numStates];
+    int[] touchedBlocks = new int[numStates];
+    while (worklistSize > 0) {
+      int splitterBlock = worklist[--worklistSize];
+      inWorklist[splitterBlock] = false;
+      int splitterSize = blockEnd[splitterBlock] - blockBegin[splitterBlock];
+      System.arraycopy(elements, blockBegin[splitterBlock], splitter, 0, splitterSize);
+      for (int charClass = 0; charClass < numCharClasses; ++charClass) {
+
+        /* mark all the predecessors of the splitter by the char class */
+        int numTouched = 0;
+        for (int i = 0; i < splitterSize; ++i) {
+          int index = charClass * numStates + splitter[i];
+          for (int j = predStart[index]; j < predStart[index + 1]; ++j) {
+            int state = preds[j];
+            int block = blockOf[state];
+            if (location[state] < blockMarked[block]) {
+              continue;
+            }
+            if (blockMarked[block] == blockBegin[block]) {
+              touchedBlocks[numTouched++] = block;
+            }
+            int markedState = elements[blockMarked[block]];
+            elements[location[state]] = markedState;
+            location[markedState] = location[state];
+            elements[blockMarked[block]] = state;
+            location[state] = blockMarked[block]++;
+          }
+        }
+
+        /* split the blocks which are marked partially */
+        for (int i = 0; i < numTouched; ++i) {
+          int block = touchedBlocks[i];
+          if (blockMarked[block] == blockEnd[block]) {
+            blockMarked[block] = blockBegin[block];
+            continue;
+          }
+          int newBlock = numBlocks++;
+          blockBegin[newBlock] = blockBegin[block];
+          blockEnd[newBlock] = blockMarked[block];
+          blockMarked[newBlock] = blockBegin[newBlock];
+          blockBegin[block] = blockEnd[newBlock];
+          blockMarked[block] = blockBegin[block];
+          for (int j = blockBegin[newBlock]; j < blockEnd[newBlock]; ++j) {
+            blockOf[elements[j]] = newBlock;
+          }
+          if (inWorklist[block] ||
+              (blockEnd[newBlock] - blockBegin[newBlock] <= blockEnd[block] - blockBegin[block])) {
+            worklist[worklistSize++] = newBlock;
+            inWorklist[newBlock] = true;
+          } else {
+            worklist[worklistSize++] = block;
+            inWorklist[block] = true;
+          }
+        }
+      }
+    }
+
+    /* the blocks become the states */
+    myTransitions = new int[numBlocks * numCharClasses];
+    myAccepting = new boolean[numBlocks];
+    myDeadState = -1;
+    myUniversalState = -1;
+    for (int block = 0; block < numBlocks; ++block) {
+      int state = elements[blockBegin[block]];
+      myAccepting[block] = accepting[state];
+      boolean dead = !accepting[state];
+      boolean universal = accepting[state];
+      for (int charClass = 0; charClass < numCharClasses; ++charClass) {
+        int nextBlock = blockOf[transitions[state * numCharClasses + charClass]];
+        myTransitions[block * numCharClasses + charClass] = nextBlock;
+        dead &= (nextBlock == block);
+        universal &= (nextBlock == block);
+      }
+      if (dead) {
+        myDeadState = block;
+      }
+      if (universal) {
+        myUniversalState = block;
+      }
+    }
+    myStartState = blockOf[0];
+  }
+}
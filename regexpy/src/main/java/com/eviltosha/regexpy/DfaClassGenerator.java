@@ -0,0 +1,456 @@
+package com.eviltosha.regexpy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates a subclass of GeneratedDfa whose matches method is the match loop of the given compiled DFA. Every state
+ * becomes a block of code, which reads the next char and jumps to the block of the next state. The next state is
+ * chosen by binary search over the char intervals the state has distinct transitions for, compiled into comparisons
+ * of the char with constants. Transitions into the dead state (and the state accepting everything) return
+ * immediately. There's neither a transition table nor a state variable, so the JIT compiles the loop into branches.
+ * <p>
+ * The class is defined as a hidden class (Java 15+), which is unloaded along with the regex. The class file is
+ * written directly (with stack map frames, as required since class file version 50), since the generated code
+ * is simple: a single method with a fixed set of locals, all of them initialized before the first branch.
+ */
+class DfaClassGenerator {
+  private static final String CLASS_NAME = "com/eviltosha/regexpy/GeneratedDfa$Impl";
+  private static final String SUPER_CLASS_NAME = "com/eviltosha/regexpy/GeneratedDfa";
+  private static final String CHAR_SEQUENCE = "java/lang/CharSequence";
+  private static final int CLASS_FILE_VERSION = 52;
+  /** Branch offsets are signed 16-bit, so larger methods would need wide jumps */
+  private static final int MAX_CODE_SIZE = Short.MAX_VALUE;
+
+  /* locals of matches(CharSequence), the sequence itself is local 1 */
+  private static final int LOCAL_LENGTH = 2;
+  private static final int LOCAL_POS = 3;
+  private static final int LOCAL_CHAR = 4;
+  private static final int NUM_LOCALS = 5;
+
+  /* opcodes */
+  private static final int ICONST_0 = 0x03;
+  private static final int BIPUSH = 0x10;
+  private static final int SIPUSH = 0x11;
+  private static final int LDC_W = 0x13;
+  private static final int ILOAD = 0x15;
+  private static final int ALOAD_0 = 0x2a;
+  private static final int ALOAD_1 = 0x2b;
+  private static final int ISTORE = 0x36;
+  private static final int IINC = 0x84;
+  private static final int IF_ICMPLT = 0xa1;
+  private static final int GOTO = 0xa7;
+  private static final int IRETURN = 0xac;
+  private static final int RETURN = 0xb1;
+  private static final int INVOKESPECIAL = 0xb7;
+  private static final int INVOKEINTERFACE = 0xb9;
+
+  /* stack map frame types */
+  private static final int FULL_FRAME = 255;
+  private static final int ITEM_INTEGER = 1;
+  private static final int ITEM_OBJECT = 7;
+
+  private CompiledDfa myDfa;
+  private ConstantPool myConstants = new ConstantPool();
+  private ByteArrayOutputStream myCode = new ByteArrayOutputStream();
+  /* offsets of the labels (-1 until the label is placed) */
+  private List<Integer> myLabelOffsets = new ArrayList<Integer>();
+  /* branches to be patched: offset of the branch instruction and its label */
+  private List<int[]> myBranches = new ArrayList<int[]>();
+
+  private DfaClassGenerator(CompiledDfa dfa) {
+    myDfa = dfa;
+  }
+
+  /** Generates and instantiates the class, returns null if it's impossible (e.g. hidden classes are unsupported) */
+  static GeneratedDfa generate(CompiledDfa dfa) {
+    byte[] classBytes = new DfaClassGenerator(dfa).writeClass();
+    return ((classBytes == null) ? null : define(classBytes));
+  }
+
+  private static GeneratedDfa define(byte[] classBytes) {
+    try {
+      Class<?> optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+      Object noOptions = Array.newInstance(optionClass, 0);
+      Method defineHiddenClass = MethodHandles.Lookup.class.getMethod(
+          "defineHiddenClass", byte[].class, boolean.class, noOptions.getClass());
+      MethodHandles.Lookup lookup =
+          (MethodHandles.Lookup) defineHiddenClass.invoke(MethodHandles.lookup(), classBytes, true, noOptions);
+      return (GeneratedDfa) lookup.lookupClass().getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+  }
+
+  /** Returns the class file, or null if the match loop is too large for a method */
+  private byte[] writeClass() {
+    byte[] matchesCode = writeMatchesCode();
+    if (matchesCode == null) {
+      return null;
+    }
+    int thisClass = myConstants.classRef(CLASS_NAME);
+    int superClass = myConstants.classRef(SUPER_CLASS_NAME);
+    int superConstructor = myConstants.methodRef(SUPER_CLASS_NAME, "<init>", "()V", false);
+    int constructorName = myConstants.utf8("<init>");
+    int constructorType = myConstants.utf8("()V");
+    int matchesName = myConstants.utf8("matches");
+    int matchesType = myConstants.utf8("(Ljava/lang/CharSequence;)Z");
+    int codeName = myConstants.utf8("Code");
+    int stackMapName = myConstants.utf8("StackMapTable");
+    byte[] stackMap = writeStackMap(thisClass, myConstants.classRef(CHAR_SEQUENCE));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0);
+      out.writeShort(CLASS_FILE_VERSION);
+      myConstants.write(out);
+      out.writeShort(0x0030); // final, super
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0); // interfaces
+      out.writeShort(0); // fields
+      out.writeShort(2); // methods
+
+      /* constructor calling the super constructor */
+      out.writeShort(0x0001); // public
+      out.writeShort(constructorName);
+      out.writeShort(constructorType);
+      out.writeShort(1);
+      out.writeShort(codeName);
+      out.writeInt(12 + 5);
+      out.writeShort(1); // max stack
+      out.writeShort(1); // max locals
+      out.writeInt(5);
+      out.writeByte(ALOAD_0);
+      out.writeByte(INVOKESPECIAL);
+      out.writeShort(superConstructor);
+      out.writeByte(RETURN);
+      out.writeShort(0); // exception table
+      out.writeShort(0); // attributes
+
+      out.writeShort(0x0001); // public
+      out.writeShort(matchesName);
+      out.writeShort(matchesType);
+      out.writeShort(1);
+      out.writeShort(codeName);
+      out.writeInt(12 + matchesCode.length + 6 + stackMap.length);
+      out.writeShort(2); // max stack
+      out.writeShort(NUM_LOCALS);
+      out.writeInt(matchesCode.length);
+      out.write(matchesCode);
+      out.writeShort(0); // exception table
+      out.writeShort(1);
+      out.writeShort(stackMapName);
+      out.writeInt(stackMap.length);
+      out.write(stackMap);
+
+      out.writeShort(0); // class attributes
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /** Returns the code of matches(CharSequence), or null if it's too large */
+  private byte[] writeMatchesCode() {
+    int lengthMethod = myConstants.methodRef(CHAR_SEQUENCE, "length", "()I", true);
+    int charAtMethod = myConstants.methodRef(CHAR_SEQUENCE, "charAt", "(I)C", true);
+    int numStates = myDfa.getNumStates();
+    int[] stateLabels = new int[numStates];
+    for (int state = 0; state < numStates; ++state) {
+      stateLabels[state] = newLabel();
+    }
+
+    /* length = str.length(); pos = 0; ch = 0; */
+    emit(ALOAD_1);
+    emit(INVOKEINTERFACE);
+    emitShort(lengthMethod);
+    emit(1);
+    emit(0);
+    emit(ISTORE);
+    emit(LOCAL_LENGTH);
+    emit(ICONST_0);
+    emit(ISTORE);
+    emit(LOCAL_POS);
+    emit(ICONST_0);
+    emit(ISTORE);
+    emit(LOCAL_CHAR);
+    emitJump(myDfa.getStartState(), stateLabels);
+
+    for (int state = 0; state < numStates; ++state) {
+      if ((state == myDfa.getDeadState()) || (state == myDfa.getUniversalState())) {
+        continue;
+      }
+      placeLabel(stateLabels[state]);
+
+      /* if (pos >= length) return accepting; */
+      int readLabel = newLabel();
+      emitLoad(LOCAL_POS);
+      emitLoad(LOCAL_LENGTH);
+      emitBranch(IF_ICMPLT, readLabel);
+      emit(ICONST_0 + (myDfa.isAccepting(state) ? 1 : 0));
+      emit(IRETURN);
+
+      /* ch = str.charAt(pos++); */
+      placeLabel(readLabel);
+      emit(ALOAD_1);
+      emitLoad(LOCAL_POS);
+      emit(INVOKEINTERFACE);
+      emitShort(charAtMethod);
+      emit(2);
+      emit(0);
+      emit(ISTORE);
+      emit(LOCAL_CHAR);
+      emit(IINC);
+      emit(LOCAL_POS);
+      emit(1);
+
+      List<int[]> intervals = transitionIntervals(state);
+      emitSearch(intervals, 0, intervals.size() - 1, stateLabels);
+      if (myCode.size() > MAX_CODE_SIZE) {
+        return null;
+      }
+    }
+
+    byte[] code = myCode.toByteArray();
+    for (int[] branch : myBranches) {
+      int offset = myLabelOffsets.get(branch[1]) - branch[0];
+      code[branch[0] + 1] = (byte) (offset >> 8);
+      code[branch[0] + 2] = (byte) offset;
+    }
+    return code;
+  }
+
+  /**
+   * Returns the maximal intervals of chars leading from the state to the same state, as pairs (first char, next
+   * state) in ascending order; each interval lasts until the first char of the next one
+   */
+  private List<int[]> transitionIntervals(int state) {
+    CharClasses charClasses = myDfa.getCharClasses();
+    List<int[]> intervals = new ArrayList<int[]>();
+    for (int charClass = 0; charClass < charClasses.size(); ++charClass) {
+      int nextState = myDfa.transition(state, charClass);
+      if (intervals.isEmpty() || (intervals.get(intervals.size() - 1)[1] != nextState)) {
+        intervals.add(new int[] {charClasses.representative(charClass), nextState});
+      }
+    }
+    return intervals;
+  }
+
+  /** Emits binary search for the interval containing the char among the intervals from first to last */
+  private void emitSearch(List<int[]> intervals, int first, int last, int[] stateLabels) {
+    if (first == last) {
+      emitJump(intervals.get(first)[1], stateLabels);
+      return;
+    }
+    int middle = (first + last + 1) >>> 1;
+    int lowerLabel = newLabel();
+    emitLoad(LOCAL_CHAR);
+    emitConstant(intervals.get(middle)[0]);
+    emitBranch(IF_ICMPLT, lowerLabel);
+    emitSearch(intervals, middle, last, stateLabels);
+    placeLabel(lowerLabel);
+    emitSearch(intervals, first, middle - 1, stateLabels);
+  }
+
+  /** Emits the transition into the state: the dead and the universal states decide the result right away */
+  private void emitJump(int state, int[] stateLabels) {
+    if ((state == myDfa.getDeadState()) || (state == myDfa.getUniversalState())) {
+      emit(ICONST_0 + ((state == myDfa.getUniversalState()) ? 1 : 0));
+      emit(IRETURN);
+    } else {
+      emitBranch(GOTO, stateLabels[state]);
+    }
+  }
+
+  /**
+   * Writes a full frame for every label: all of them are branch targets or follow unconditional jumps, and the
+   * locals are the same everywhere
+   */
+  private byte[] writeStackMap(int thisClass, int charSequenceClass) {
+    int[] offsets = new int[myLabelOffsets.size()];
+    int numOffsets = 0;
+    for (int offset : myLabelOffsets) {
+      /* the labels of the dead and the universal states aren't placed */
+      if (offset >= 0) {
+        offsets[numOffsets++] = offset;
+      }
+    }
+    Arrays.sort(offsets, 0, numOffsets);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      int numFrames = 0;
+      for (int i = 0; i < numOffsets; ++i) {
+        if ((i == 0) || (offsets[i] != offsets[i - 1])) {
+          ++numFrames;
+        }
+      }
+      out.writeShort(numFrames);
+      int previousOffset = -1;
+      for (int i = 0; i < numOffsets; ++i) {
+        if ((i > 0) && (offsets[i] == offsets[i - 1])) {
+          continue;
+        }
+        out.writeByte(FULL_FRAME);
+        out.writeShort(offsets[i] - previousOffset - 1);
+        out.writeShort(NUM_LOCALS);
+        out.writeByte(ITEM_OBJECT);
+        out.writeShort(thisClass);
+        out.writeByte(ITEM_OBJECT);
+        out.writeShort(charSequenceClass);
+        out.writeByte(ITEM_INTEGER);
+        out.writeByte(ITEM_INTEGER);
+        out.writeByte(ITEM_INTEGER);
+        out.writeShort(0); // stack
+        previousOffset = offsets[i];
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private int newLabel() {
+    myLabelOffsets.add(-1);
+    return myLabelOffsets.size() - 1;
+  }
+
+  private void placeLabel(int label) {
+    myLabelOffsets.set(label, myCode.size());
+  }
+
+  private void emit(int value) {
+    myCode.write(value);
+  }
+
+  private void emitShort(int value) {
+    myCode.write(value >> 8);
+    myCode.write(value);
+  }
+
+  private void emitLoad(int local) {
+    emit(ILOAD);
+    emit(local);
+  }
+
+  private void emitConstant(int value) {
+    if (value <= Byte.MAX_VALUE) {
+      emit(BIPUSH);
+      emit(value);
+    } else if (value <= Short.MAX_VALUE) {
+      emit(SIPUSH);
+      emitShort(value);
+    } else {
+      emit(LDC_W);
+      emitShort(myConstants.integer(value));
+    }
+  }
+
+  private void emitBranch(int opcode, int label) {
+    myBranches.add(new int[] {myCode.size(), label});
+    emit(opcode);
+    emitShort(0);
+  }
+
+  /** Constant pool of the generated class, equal constants are shared */
+  private static class ConstantPool {
+    private static final int TAG_UTF8 = 1;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_CLASS = 7;
+    private static final int TAG_METHOD_REF = 10;
+    private static final int TAG_INTERFACE_METHOD_REF = 11;
+    private static final int TAG_NAME_AND_TYPE = 12;
+
+    private ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+    private DataOutputStream myOut = new DataOutputStream(myBytes);
+    private Map<String, Integer> myIndices = new HashMap<String, Integer>();
+    private int mySize = 0;
+
+    int utf8(String value) {
+      Integer index = myIndices.get("U" + value);
+      if (index != null) {
+        return index;
+      }
+      try {
+        myOut.writeByte(TAG_UTF8);
+        myOut.writeUTF(value);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      return register("U" + value);
+    }
+
+    int integer(int value) {
+      Integer index = myIndices.get("I" + value);
+      if (index != null) {
+        return index;
+      }
+      try {
+        myOut.writeByte(TAG_INTEGER);
+        myOut.writeInt(value);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      return register("I" + value);
+    }
+
+    int classRef(String name) {
+      Integer index = myIndices.get("C" + name);
+      if (index != null) {
+        return index;
+      }
+      writeRef(TAG_CLASS, utf8(name));
+      return register("C" + name);
+    }
+
+    int methodRef(String owner, String name, String type, boolean isInterface) {
+      String key = "M" + owner + "." + name + type;
+      Integer index = myIndices.get(key);
+      if (index != null) {
+        return index;
+      }
+      int ownerIndex = classRef(owner);
+      int nameIndex = utf8(name);
+      int typeIndex = utf8(type);
+      writeRef(TAG_NAME_AND_TYPE, nameIndex, typeIndex);
+      int nameAndType = register("N" + name + type);
+      writeRef(isInterface ? TAG_INTERFACE_METHOD_REF : TAG_METHOD_REF, ownerIndex, nameAndType);
+      return register(key);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeShort(mySize + 1);
+      myBytes.writeTo(out);
+    }
+
+    private void writeRef(int tag, int... indices) {
+      try {
+        myOut.writeByte(tag);
+        for (int index : indices) {
+          myOut.writeShort(index);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private int register(String key) {
+      myIndices.put(key, ++mySize);
+      return mySize;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.eviltosha.regexpy;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * State of a DFA built from the regex graph: set of alive consuming Nodes (sorted by ids) and the end Nodes which
+ * accept if the string ends in this state (a graph combined from several regexes has several end Nodes, they are
+ * identified by their indices). The transitions are indexed by char classes and filled in by the DFA owning
+ * the state, null transition means it's not computed yet.
+ */
+class DfaState {
+  private static final Comparator<Node> NODE_ID_ORDER = new Comparator<Node>() {
+    @Override
+    public int compare(Node node1, Node node2) {
+      return (node1.getId() - node2.getId());
+    }
+  };
+
+  private final Node[] myNodes;
+  private final int[] myAcceptedEnds;
+  private final DfaState[] myTransitions;
+  private final int myHash;
+
+  DfaState(Node[] nodes, int[] acceptedEnds, int numCharClasses) {
+    myNodes = nodes;
+    myAcceptedEnds = acceptedEnds;
+    myTransitions = new DfaState[numCharClasses];
+    myHash = 31 * Arrays.hashCode(nodes) + Arrays.hashCode(acceptedEnds);
+  }
+
+  Node[] getNodes() { return myNodes; }
+
+  boolean isAccepting() { return (myAcceptedEnds.length > 0); }
+
+  int[] getAcceptedEnds() { return myAcceptedEnds; }
+
+  DfaState[] getTransitions() { return myTransitions; }
+
+  /** Whether no string can be matched from this state */
+  boolean isDead() {
+    return ((myNodes.length == 0) && (myAcceptedEnds.length == 0));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof DfaState)) {
+      return false;
+    }
+    DfaState state = (DfaState) obj;
+    return (Arrays.equals(myAcceptedEnds, state.myAcceptedEnds) && Arrays.equals(myNodes, state.myNodes));
+  }
+
+  @Override
+  public int hashCode() { return myHash; }
+
+  /** Maps ids of the end Nodes to their indices, ids of the other Nodes are mapped to -1 */
+  static int[] endIndices(Node[] endNodes, int numNodes) {
+    int[] endIndices = new int[numNodes];
+    Arrays.fill(endIndices, -1);
+    for (int i = 0; i < endNodes.length; ++i) {
+      endIndices[endNodes[i].getId()] = i;
+    }
+    return endIndices;
+  }
+
+  /** Extracts indices of the end Nodes of the set in ascending order */
+  static int[] acceptedEnds(NodeSet nodes, int[] endIndices) {
+    int numAccepted = 0;
+    for (int i = 0; i < nodes.size(); ++i) {
+      if (endIndices[nodes.get(i).getId()] >= 0) {
+        ++numAccepted;
+      }
+    }
+    int[] acceptedEnds = new int[numAccepted];
+    numAccepted = 0;
+    for (int i = 0; i < nodes.size(); ++i) {
+      if (endIndices[nodes.get(i).getId()] >= 0) {
+        acceptedEnds[numAccepted++] = endIndices[nodes.get(i).getId()];
+      }
+    }
+    Arrays.sort(acceptedEnds);
+    return acceptedEnds;
+  }
+
+  /** Extracts consuming Nodes of the set sorted by their ids */
+  static Node[] consumingNodes(NodeSet nodes) {
+    int numConsuming = 0;
+    for (int i = 0; i < nodes.size(); ++i) {
+      if (nodes.get(i).consumesChar()) {
+        ++numConsuming;
+      }
+    }
+    Node[] consumingNodes = new Node[numConsuming];
+    numConsuming = 0;
+    for (int i = 0; i < nodes.size(); ++i) {
+      if (nodes.get(i).consumesChar()) {
+        consumingNodes[numConsuming++] = nodes.get(i);
+      }
+    }
+    Arrays.sort(consumingNodes, NODE_ID_ORDER);
+    return consumingNodes;
+  }
+}
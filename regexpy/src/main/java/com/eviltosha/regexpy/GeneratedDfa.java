@@ -0,0 +1,10 @@
+package com.eviltosha.regexpy;
+
+/**
+ * Match loop of a compiled DFA generated as a JVM class by DfaClassGenerator. The generated classes are stateless,
+ * so a single instance is shared by all the matchers of the regex.
+ */
+abstract class GeneratedDfa {
+  /** Matches the whole sequence */
+  abstract boolean matches(CharSequence str);
+}
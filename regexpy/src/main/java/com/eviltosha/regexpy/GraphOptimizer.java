@@ -0,0 +1,170 @@
+package com.eviltosha.regexpy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Passes simplifying the graph constructed by the parser, which introduces a lot of redundant Nodes: empty Nodes
+ * linking quantifiers and groups, group Nodes of the groups which are never recalled, single character Nodes of
+ * literal runs. Every Node removed is one step less per position for the engines.
+ */
+class GraphOptimizer {
+  private GraphOptimizer() { }
+
+  /**
+   * Drops the bookkeeping of the groups which aren't recalled (only the bounds of the whole match are reported):
+   * their group Nodes are replaced with empty Nodes. Then bypasses the empty Nodes which have a single adjacent
+   * Node: the edges leading to such Node are redirected to its adjacent Node (keeping their positions), so the
+   * Node becomes unreachable. Every loop of non-consuming Nodes which can be left has a Node with several adjacent
+   * Nodes, which is kept, so empty loops are still detected.
+   */
+  static void removeEpsilonNodes(Node startNode, Node endNode, int numGroups) {
+    List<Node> nodes = collectNodes(startNode);
+    boolean[] recalledGroups = new boolean[numGroups + 1];
+    for (Node node : nodes) {
+      if (node instanceof GroupRecallNode) {
+        recalledGroups[((GroupRecallNode) node).getGroupId()] = true;
+      }
+    }
+    Map<Node, Node> replacements = new HashMap<Node, Node>();
+    for (Node node : nodes) {
+      if ((node != startNode) && (node != endNode) && isUnrecalledGroupNode(node, recalledGroups)) {
+        replacements.put(node, new EmptyNode());
+      }
+    }
+    for (Map.Entry<Node, Node> entry : replacements.entrySet()) {
+      for (Node nextNode : entry.getKey().getNextNodes()) {
+        entry.getValue().addNextNode(nextNode);
+      }
+    }
+    nodes.removeAll(replacements.keySet());
+    nodes.addAll(replacements.values());
+    for (Node node : nodes) {
+      List<Node> nextNodes = node.getNextNodes();
+      for (int i = 0; i < nextNodes.size(); ++i) {
+        if (replacements.containsKey(nextNodes.get(i))) {
+          nextNodes.set(i, replacements.get(nextNodes.get(i)));
+        }
+      }
+    }
+
+    for (Node node : nodes) {
+      List<Node> nextNodes = node.getNextNodes();
+      for (int i = 0; i < nextNodes.size(); ++i) {
+        Node target = nextNodes.get(i);
+
+        /* the chain is followed a limited number of steps, so that a closed loop of such Nodes is left as is */
+        for (int steps = 0; (steps < nodes.size()) && isRemovable(target); ++steps) {
+          target = target.getNextNodes().get(0);
+        }
+        if (!isRemovable(target)) {
+          nextNodes.set(i, target);
+        }
+      }
+    }
+  }
+
+  /**
+   * Fuses the runs of single character Nodes linked one after another (and not entered in the middle) into
+   * LiteralNodes. A LiteralNode consumes several characters, so it's applicable only to the graphs matched by
+   * backtracking. Returns whether anything was fused, then the graph should be indexed again.
+   */
+  static boolean fuseLiterals(Node[] nodes) {
+    int[] numPrevNodes = new int[nodes.length];
+    Node[] prevNodes = new Node[nodes.length];
+    for (Node node : nodes) {
+      for (Node nextNode : node.getNextNodes()) {
+        ++numPrevNodes[nextNode.getId()];
+        prevNodes[nextNode.getId()] = node;
+      }
+    }
+
+    /* a run starts at the single character Node which isn't entered only from the previous Node of the run */
+    Node[] literalNodes = new Node[nodes.length];
+    List<Node> allNodes = new ArrayList<Node>();
+    for (Node node : nodes) {
+      allNodes.add(node);
+      Node prevNode = prevNodes[node.getId()];
+      if (!(node instanceof SymbolNode) ||
+          ((numPrevNodes[node.getId()] == 1) && (prevNode instanceof SymbolNode) &&
+           continuesRun(prevNode, numPrevNodes))) {
+        continue;
+      }
+      StringBuilder literal = new StringBuilder();
+      literal.append((char) node.literalChar());
+      Node runNode = node;
+      while (continuesRun(runNode, numPrevNodes) && (runNode.getNextNodes().get(0) != node)) {
+        runNode = runNode.getNextNodes().get(0);
+        literal.append((char) runNode.literalChar());
+      }
+      if (runNode != node) {
+        Node literalNode = new LiteralNode(literal.toString());
+        for (Node nextNode : runNode.getNextNodes()) {
+          literalNode.addNextNode(nextNode);
+        }
+        literalNodes[node.getId()] = literalNode;
+        allNodes.add(literalNode);
+      }
+    }
+    if (allNodes.size() == nodes.length) {
+      return false;
+    }
+
+    /* the edges leading to the runs are redirected to the literals, the runs become unreachable */
+    for (Node node : allNodes) {
+      List<Node> nextNodes = node.getNextNodes();
+      for (int i = 0; i < nextNodes.size(); ++i) {
+        Node nextNode = nextNodes.get(i);
+        if ((nextNode.getId() >= 0) && (literalNodes[nextNode.getId()] != null)) {
+          nextNodes.set(i, literalNodes[nextNode.getId()]);
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean isUnrecalledGroupNode(Node node, boolean[] recalledGroups) {
+    if (node instanceof OpenGroupNode) {
+      return !recalledGroups[((OpenGroupNode) node).getGroupId()];
+    }
+    if (node instanceof CloseGroupNode) {
+      return !recalledGroups[((CloseGroupNode) node).getGroupId()];
+    }
+    return false;
+  }
+
+  /* the start Node and the end Node aren't empty Nodes, so they are never removed */
+  private static boolean isRemovable(Node node) {
+    return ((node.getClass() == EmptyNode.class) && (node.getNextNodes().size() == 1) &&
+        (node.getNextNodes().get(0) != node));
+  }
+
+  /** Whether the single character Node is followed by the next Node of its run */
+  private static boolean continuesRun(Node node, int[] numPrevNodes) {
+    List<Node> nextNodes = node.getNextNodes();
+    return ((nextNodes.size() == 1) && (nextNodes.get(0) instanceof SymbolNode) &&
+        (numPrevNodes[nextNodes.get(0).getId()] == 1));
+  }
+
+  private static List<Node> collectNodes(Node startNode) {
+    List<Node> nodes = new ArrayList<Node>();
+    List<Node> stack = new ArrayList<Node>();
+    Set<Node> visited = new HashSet<Node>();
+    stack.add(startNode);
+    visited.add(startNode);
+    while (!stack.isEmpty()) {
+      Node node = stack.remove(stack.size() - 1);
+      nodes.add(node);
+      for (Node nextNode : node.getNextNodes()) {
+        if (visited.add(nextNode)) {
+          stack.add(nextNode);
+        }
+      }
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,219 @@
+package com.eviltosha.regexpy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DFA built lazily from the regex graph: its states are the sets of alive consuming Nodes, they are created
+ * on demand while matching and cached along with transitions between them, so a warmed up DFA matches a string
+ * with a single table lookup per char.
+ * <p>
+ * The cache is limited by the approximate memory size; when it's exceeded, the cache is flushed. If a single match
+ * keeps flushing the cache, it's finished by NFA simulation instead.
+ * <p>
+ * A single DFA is shared by all the Matchers of the Regex, it's safe to use it concurrently: the states are
+ * immutable except for their transitions, which are idempotently filled in (a thread may not see a transition
+ * created by another thread, then it simply computes the same transition again).
+ * <p>
+ * In the search mode, the DFA tells whether the string contains a match rather than whether it matches whole: the
+ * start Node is kept alive at every position, and the search stops at the first position where the end Node is
+ * reached. The search DFA is derived from the DFA of the same graph (which must have a single end Node).
+ */
+class LazyDfa {
+  /** Approximate memory taken by a state apart from its arrays (object headers, cache entry) */
+  private static final int STATE_OVERHEAD_SIZE = 96;
+  /** Number of cache flushes during a single match after which the match is finished by NFA simulation */
+  static final int MAX_FLUSHES_PER_MATCH = 2;
+
+  /* maps ids of the end Nodes to their indices */
+  private int[] myEndIndices;
+  private CharClasses myCharClasses;
+  private long myCacheSize;
+  private AtomicLong myCacheUsage = new AtomicLong(0);
+  private AtomicInteger myFlushCount = new AtomicInteger(0);
+  private volatile ConcurrentHashMap<DfaState, DfaState> myStates = new ConcurrentHashMap<DfaState, DfaState>();
+  private volatile DfaState myStartState;
+  /* whether the DFA is in the search mode; the state reached when a match is found then (never cached) */
+  private boolean mySearching;
+  private DfaState myFoundState;
+  private volatile LazyDfa mySearchDfa;
+
+  /** The graph may have several end Nodes (when it's combined from several regexes) */
+  LazyDfa(Node[] endNodes, Node[] nodes, long cacheSize) {
+    myEndIndices = DfaState.endIndices(endNodes, nodes.length);
+    myCharClasses = new CharClasses(nodes);
+    myCacheSize = cacheSize;
+  }
+
+  /** Search DFA of the same graph, sharing the char classes with the given DFA, but not its cache */
+  private LazyDfa(LazyDfa dfa) {
+    myEndIndices = dfa.myEndIndices;
+    myCharClasses = dfa.myCharClasses;
+    myCacheSize = dfa.myCacheSize;
+    mySearching = true;
+    myFoundState = new DfaState(new Node[0], new int[] {0}, 0);
+  }
+
+  /**
+   * Returns the search DFA of the graph, creates it on first use (threads racing for it may create separate ones,
+   * which only costs them a few more computed transitions)
+   */
+  LazyDfa getSearchDfa() {
+    LazyDfa searchDfa = mySearchDfa;
+    if (searchDfa == null) {
+      searchDfa = new LazyDfa(this);
+      mySearchDfa = searchDfa;
+    }
+    return searchDfa;
+  }
+
+  /** Whether the cache can hold at least the start state along with a few states reachable from it */
+  boolean isUsable(int numNodes) {
+    return (myCacheSize >= 4 * stateSize(numNodes));
+  }
+
+  int getFlushCount() { return myFlushCount.get(); }
+
+  /** Whether the string matches, or contains a match in the search mode */
+  boolean matches(CharSequence str, NfaSimulator simulator) {
+    return run(str, simulator).isAccepting();
+  }
+
+  /** Returns the indices of the end Nodes accepting the string in ascending order */
+  int[] acceptedEnds(CharSequence str, NfaSimulator simulator) {
+    return run(str, simulator).getAcceptedEnds();
+  }
+
+  /**
+   * Returns the state at the end of the string. If the match is finished by NFA simulation, the state is
+   * constructed from the simulation result (and isn't cached).
+   */
+  private DfaState run(CharSequence str, NfaSimulator simulator) {
+    if (str.length() == 0) {
+      return createState(simulator.startNodes(true));
+    }
+    int flushCount = getFlushCount();
+    DfaState state = getStartState(simulator);
+    if (state == myFoundState) {
+      return state;
+    }
+    for (int strPos = 0; strPos < str.length(); ++strPos) {
+      char ch = str.charAt(strPos);
+      DfaState nextState = getTransition(state, ch);
+      if (nextState == null) {
+        if (getFlushCount() - flushCount >= MAX_FLUSHES_PER_MATCH) {
+          if (mySearching) {
+            return (simulator.find(str, 0, "") ? myFoundState : new DfaState(new Node[0], new int[0], 0));
+          }
+          return createState(simulator.runFrom(str, strPos, state.getNodes()));
+        }
+        nextState = computeTransition(state, ch, simulator);
+      }
+      if (nextState.isDead() || (nextState == myFoundState)) {
+        return nextState;
+      }
+      state = nextState;
+    }
+    return state;
+  }
+
+  /** Returns the start state, creates it if it's absent */
+  DfaState getStartState(NfaSimulator simulator) {
+    DfaState state = myStartState;
+    if (state == null) {
+      NodeSet startNodes = simulator.startNodes(false);
+      if (mySearching && (DfaState.acceptedEnds(startNodes, myEndIndices).length > 0)) {
+        return myFoundState;
+      }
+      Node[] nodes = DfaState.consumingNodes(startNodes);
+      state = getState(nodes, DfaState.acceptedEnds(simulator.startNodes(true), myEndIndices));
+      myStartState = state;
+    }
+    return state;
+  }
+
+  /** Returns the cached transition from the state on the char, or null if it isn't computed yet */
+  DfaState getTransition(DfaState state, char ch) {
+    return state.getTransitions()[myCharClasses.classOf(ch)];
+  }
+
+  /** Computes the transition from the state on the char and caches it */
+  DfaState computeTransition(DfaState state, char ch, NfaSimulator simulator) {
+    int charClass = myCharClasses.classOf(ch);
+    ch = myCharClasses.representative(charClass);
+    DfaState nextState;
+    /* in the search mode, a match may start after every char, and a reached end Node finishes the search */
+    if (mySearching) {
+      NodeSet nextNodes = simulator.searchStepNodes(state.getNodes(), ch, false);
+      if (DfaState.acceptedEnds(nextNodes, myEndIndices).length > 0) {
+        nextState = myFoundState;
+      } else {
+        Node[] nodes = DfaState.consumingNodes(nextNodes);
+        nextState = getState(nodes,
+            DfaState.acceptedEnds(simulator.searchStepNodes(state.getNodes(), ch, true), myEndIndices));
+      }
+    } else {
+      Node[] nodes = DfaState.consumingNodes(simulator.stepNodes(state.getNodes(), ch, false));
+      int[] acceptedEnds = DfaState.acceptedEnds(simulator.stepNodes(state.getNodes(), ch, true), myEndIndices);
+      nextState = getState(nodes, acceptedEnds);
+    }
+    state.getTransitions()[charClass] = nextState;
+    return nextState;
+  }
+
+  /**
+   * Whether the state accepts whatever follows it, i.e. it's accepting and every transition leads back to it.
+   * The missing transitions are computed, so it's meant for occasional checks (e.g. once per streamed chunk).
+   */
+  boolean isUniversal(DfaState state, NfaSimulator simulator) {
+    if (!state.isAccepting()) {
+      return false;
+    }
+    DfaState[] transitions = state.getTransitions();
+    for (int charClass = 0; charClass < transitions.length; ++charClass) {
+      DfaState nextState = transitions[charClass];
+      if (nextState == null) {
+        nextState = computeTransition(state, myCharClasses.representative(charClass), simulator);
+      }
+      if (!nextState.equals(state)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Constructs uncached state from the alive Nodes at the end of the string */
+  private DfaState createState(NodeSet nodes) {
+    return new DfaState(DfaState.consumingNodes(nodes), DfaState.acceptedEnds(nodes, myEndIndices), 0);
+  }
+
+  /** Returns the cached state for the given alive consuming Nodes, creates and caches it if it's absent */
+  private DfaState getState(Node[] nodes, int[] acceptedEnds) {
+    DfaState state = new DfaState(nodes, acceptedEnds, myCharClasses.size());
+    ConcurrentHashMap<DfaState, DfaState> states = myStates;
+    DfaState cachedState = states.get(state);
+    if (cachedState != null) {
+      return cachedState;
+    }
+    if (myCacheUsage.addAndGet(stateSize(nodes.length) + 4L * acceptedEnds.length) > myCacheSize) {
+      flush();
+      states = myStates;
+    }
+    cachedState = states.putIfAbsent(state, state);
+    return ((cachedState != null) ? cachedState : state);
+  }
+
+  private synchronized void flush() {
+    if (myCacheUsage.get() > myCacheSize) {
+      myStates = new ConcurrentHashMap<DfaState, DfaState>();
+      myStartState = null;
+      myCacheUsage.set(0);
+      myFlushCount.incrementAndGet();
+    }
+  }
+
+  private long stateSize(int numNodes) {
+    return STATE_OVERHEAD_SIZE + 4L * numNodes + 4L * myCharClasses.size();
+  }
+}
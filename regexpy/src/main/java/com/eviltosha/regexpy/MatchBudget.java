@@ -0,0 +1,44 @@
+package com.eviltosha.regexpy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of a single matches or find call: the number of backtracking steps (Nodes entered) and the wall-clock
+ * time. A call exceeding either of them throws MatchBudgetExceededException. Only the backtracking engine is
+ * limited: the automata engines run in time linear in the length of the input anyway.
+ */
+public final class MatchBudget {
+  /** No limits, the default of every regex */
+  public static final MatchBudget UNLIMITED = new MatchBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+
+  private final long myMaxSteps;
+  private final long myTimeoutNanos;
+
+  private MatchBudget(long maxSteps, long timeoutNanos) {
+    if ((maxSteps < 0) || (timeoutNanos < 0)) {
+      throw new IllegalArgumentException("Negative match budget");
+    }
+    myMaxSteps = maxSteps;
+    myTimeoutNanos = timeoutNanos;
+  }
+
+  /** Returns the budget limiting both the number of steps and the time of a call */
+  public static MatchBudget of(long maxSteps, long timeout, TimeUnit unit) {
+    return new MatchBudget(maxSteps, unit.toNanos(timeout));
+  }
+
+  public static MatchBudget ofSteps(long maxSteps) {
+    return new MatchBudget(maxSteps, Long.MAX_VALUE);
+  }
+
+  public static MatchBudget ofTimeout(long timeout, TimeUnit unit) {
+    return new MatchBudget(Long.MAX_VALUE, unit.toNanos(timeout));
+  }
+
+  public long getMaxSteps() { return myMaxSteps; }
+
+  /** Returns the time limit in nanoseconds, Long.MAX_VALUE if the time isn't limited */
+  public long getTimeoutNanos() { return myTimeoutNanos; }
+
+  boolean hasTimeout() { return (myTimeoutNanos != Long.MAX_VALUE); }
+}
@@ -0,0 +1,19 @@
+package com.eviltosha.regexpy;
+
+/** Thrown by the matches and find calls which have exceeded their MatchBudget, the match result is unknown */
+public class MatchBudgetExceededException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  private final String myRegex;
+  private final long mySteps;
+
+  public MatchBudgetExceededException(String desc, String regex, long steps) {
+    super(desc + " after " + steps + " steps matching " + regex);
+    myRegex = regex;
+    mySteps = steps;
+  }
+
+  public String getRegex() { return myRegex; }
+  /** Returns the number of backtracking steps taken before the call was aborted */
+  public long getSteps() { return mySteps; }
+}
@@ -0,0 +1,69 @@
+package com.eviltosha.regexpy;
+
+/**
+ * Execution statistics of the last match (matches or find) of a Matcher, collected if enabled by
+ * Matcher.setStatsEnabled. Used for finding out why a regex is slow: the engine which matched it, and for
+ * backtracking the amount of work done. Counters of the automata engines are zero, they are linear anyway.
+ */
+public final class MatchStats {
+  /** The engine which matched the input */
+  public enum Engine {
+    /** The input lacks a literal required by the regex, no engine has run */
+    NONE,
+    GENERATED_CLASS,
+    COMPILED_DFA,
+    LAZY_DFA,
+    NFA_SIMULATION,
+    BACKTRACKING
+  }
+
+  private final Engine myEngine;
+  private final long myNodeVisits;
+  private final long myBacktracks;
+  private final int myMaxChoicePoints;
+  private final long myGroupOperations;
+  private final long myUndoneChanges;
+  private final long myRepeatChecks;
+
+  MatchStats(Engine engine, long nodeVisits, long backtracks, int maxChoicePoints, long groupOperations,
+             long undoneChanges, long repeatChecks) {
+    myEngine = engine;
+    myNodeVisits = nodeVisits;
+    myBacktracks = backtracks;
+    myMaxChoicePoints = maxChoicePoints;
+    myGroupOperations = groupOperations;
+    myUndoneChanges = undoneChanges;
+    myRepeatChecks = repeatChecks;
+  }
+
+  public Engine getEngine() { return myEngine; }
+
+  /** Returns the number of times the backtracker entered a Node (including the failed attempts) */
+  public long getNodeVisits() { return myNodeVisits; }
+
+  /** Returns the number of times the backtracker resumed from a choice point after its path failed */
+  public long getBacktracks() { return myBacktracks; }
+
+  /**
+   * Returns the maximum number of pending alternatives (with atomic group barriers), the depth of the search. The
+   * backtracker isn't recursive, so this is its counterpart of the maximum recursion depth: the alternatives are
+   * kept on the heap, thus the depth is limited only by memory.
+   */
+  public int getMaxChoicePoints() { return myMaxChoicePoints; }
+
+  /** Returns the number of times a group was opened or closed */
+  public long getGroupOperations() { return myGroupOperations; }
+
+  /** Returns the number of changes (group bounds, repeat counters, visits) undone on backtracking */
+  public long getUndoneChanges() { return myUndoneChanges; }
+
+  /** Returns the number of times the iteration count of a counted repeat was checked */
+  public long getRepeatChecks() { return myRepeatChecks; }
+
+  @Override
+  public String toString() {
+    return "MatchStats{engine=" + myEngine + ", nodeVisits=" + myNodeVisits + ", backtracks=" + myBacktracks +
+        ", maxChoicePoints=" + myMaxChoicePoints + ", groupOperations=" + myGroupOperations +
+        ", undoneChanges=" + myUndoneChanges + ", repeatChecks=" + myRepeatChecks + "}";
+  }
+}
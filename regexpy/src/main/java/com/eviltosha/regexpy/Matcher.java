@@ -0,0 +1,739 @@
+package com.eviltosha.regexpy;
+
+import java.util.Arrays;
+
+/** A class for matching strings against regexp. Multiple matchers for the single Regex are allowed. */
+public class Matcher {
+  /*
+   * choice point consists of Node id, next choice, number of choices, position after the Node and trail size.
+   * Choice point of a run Node has the choice RUN_CHOICE, the minimal position after the run instead of the number
+   * of choices, and the position after the run tried last. Barrier of an atomic group has the choice ATOMIC_CHOICE.
+   */
+  private static final int CHOICE_POINT_SIZE = 5;
+  private static final int INITIAL_STACK_SIZE = 64;
+  private static final int RUN_CHOICE = -1;
+  private static final int ATOMIC_CHOICE = -2;
+  /** Number of steps between the checks of the deadline of a match with a time limit */
+  private static final int DEADLINE_CHECK_INTERVAL = 4096;
+
+  private String myRegexString;
+  /* bounds of group g are stored at 2 * g (begin) and 2 * g + 1 (end), -1 stands for unset bound */
+  private int[] myGroupBounds;
+  private Node myStartNode;
+  private Node myEndNode;
+  private Node[] myNodes;
+  /* indexed by Node ids */
+  private int[] myLastVisitPositions;
+  /* iteration count of repeat r is stored at 2 * r, position where its current iteration started at 2 * r + 1 */
+  private int[] myRepeatStates;
+  /* alternatives which are not tried yet, the last one is tried first */
+  private int[] myChoicePoints;
+  private int myNumChoicePoints;
+  /*
+   * log of the changes to be undone on backtracking: pairs (slot, previous value), non-negative slot is an index
+   * in myGroupBounds followed by myRepeatStates, negative slot stands for the last visit position of the Node
+   * with id (-1 - slot)
+   */
+  private int[] myTrail;
+  private int myTrailSize;
+  /* Nodes which are visited at most once per position, null if there are none */
+  private boolean[] myMemoizable;
+  private long myMemoizationBudget;
+  /* bit (id * (string length + 1) + position) is set if the Node was visited at the position */
+  private long[] myVisitedStates;
+  private boolean myMemoizing;
+  private int myStrLength;
+  /** Linear time engine used instead of backtracking, null if the regex isn't automaton compatible */
+  private NfaSimulator myNfaSimulator;
+  /** DFA shared with the other matchers of the regex, null if it's disabled */
+  private LazyDfa myLazyDfa;
+  /** Ahead of time compiled DFA, null if it's not requested for the regex */
+  private CompiledDfa myCompiledDfa;
+  /** Generated match loop of the compiled DFA, null if it's not requested for the regex */
+  private GeneratedDfa myGeneratedDfa;
+  private String myLiteralPrefix;
+  private String[] myRequiredLiterals;
+  /** Whether the end Node accepts at any position (when searching) rather than at the end of the string only */
+  private boolean mySearching;
+  private CharSequence myInput;
+  /** Reusable view of the char array region matched by matches(char[], int, int) */
+  private CharArraySequence myRegion;
+  private int myMatchStart = -1;
+  private int myMatchEnd = -1;
+  /* state of the input streamed by feed: whether it's started, whether its match result is already decided */
+  private boolean myStreaming;
+  private boolean myStreamDecided;
+  private int myStreamCompiledState;
+  /** Current state of the lazy DFA, null if the stream is continued by NFA simulation */
+  private DfaState myStreamDfaState;
+  private int myStreamFlushCount;
+  /** Streamed input of the regexes which aren't automaton compatible, they are matched as a whole */
+  private StringBuilder myStreamBuffer;
+  /* statistics of the last match, the counters updated outside of the backtracking loop only if they're enabled */
+  private boolean myStatsEnabled;
+  private MatchStats.Engine myStatsEngine = MatchStats.Engine.NONE;
+  private long myNodeVisits;
+  private long myBacktracks;
+  private int myMaxChoicePoints;
+  private long myGroupOperations;
+  private long myUndoneChanges;
+  private long myRepeatChecks;
+  /* budget of the current call: steps taken so far, the step count when the budget is to be checked next */
+  private MatchBudget myBudget;
+  private long myStepsTaken;
+  private long myNextBudgetCheck;
+  private long myDeadline;
+  /** Version of the settings of the regex the matcher has taken, see configure */
+  private int myConfigVersion;
+
+  Matcher(Regex regex) {
+    myRegexString = regex.getRegexString();
+    myStartNode = regex.getStartNode();
+    myLiteralPrefix = regex.getLiteralPrefix();
+    myRequiredLiterals = regex.getRequiredLiterals().toArray(new String[0]);
+    if (regex.isAutomatonCompatible()) {
+      myNfaSimulator = new NfaSimulator(myStartNode, regex.getEndNode(), regex.getNumNodes());
+    } else {
+      myEndNode = regex.getEndNode();
+      myNodes = regex.getNodes();
+      myGroupBounds = new int[2 * (regex.getNumGroups() + 1)];
+      myLastVisitPositions = new int[regex.getNumNodes()];
+      myRepeatStates = new int[2 * regex.getNumRepeats()];
+      myChoicePoints = new int[INITIAL_STACK_SIZE * CHOICE_POINT_SIZE];
+      myTrail = new int[2 * INITIAL_STACK_SIZE];
+      for (boolean memoizable : regex.getMemoizable()) {
+        if (memoizable) {
+          myMemoizable = regex.getMemoizable();
+          break;
+        }
+      }
+    }
+    configure(regex);
+  }
+
+  /**
+   * Takes the current settings of the regex (DFAs, budgets), which can be changed after the matcher is created.
+   * Used for reusing the matcher after the regex is reconfigured, it shouldn't be called in the middle of a stream.
+   */
+  void configure(Regex regex) {
+    myBudget = regex.getMatchBudget();
+    myMemoizationBudget = regex.getMemoizationBudget();
+    if (myNfaSimulator != null) {
+      myLazyDfa = regex.getLazyDfa();
+      myCompiledDfa = regex.getCompiledDfa();
+      myGeneratedDfa = regex.getGeneratedDfa();
+    }
+    myConfigVersion = regex.getConfigVersion();
+  }
+
+  int getConfigVersion() { return myConfigVersion; }
+
+  /** Same as matches(CharSequence), kept for binary compatibility with the clients compiled against it */
+  public boolean matches(String str) {
+    return matches((CharSequence) str);
+  }
+
+  /** Matches the whole sequence, which is read in place (e.g. StringBuilder or CharBuffer isn't copied) */
+  public boolean matches(CharSequence str) {
+    if (RegexEvents.isMatchEnabled()) {
+      return RegexEvents.match(this, str);
+    }
+    return matchWhole(str);
+  }
+
+  /**
+   * Matches the whole sequence within the budget (instead of the default budget of the regex), throws
+   * MatchBudgetExceededException if the budget is exceeded
+   */
+  public boolean matches(CharSequence str, MatchBudget budget) throws MatchBudgetExceededException {
+    MatchBudget defaultBudget = myBudget;
+    myBudget = budget;
+    try {
+      return matches(str);
+    } finally {
+      myBudget = defaultBudget;
+    }
+  }
+
+  /** Implementation of matches(CharSequence), which emits the JFR event if it's enabled */
+  boolean matchWhole(CharSequence str) {
+    resetStats();
+    if (!containsRequiredLiterals(str, 0)) {
+      return false;
+    }
+    if (myGeneratedDfa != null) {
+      myStatsEngine = MatchStats.Engine.GENERATED_CLASS;
+      return myGeneratedDfa.matches(str);
+    }
+    if (myCompiledDfa != null) {
+      myStatsEngine = MatchStats.Engine.COMPILED_DFA;
+      return myCompiledDfa.matches(str);
+    }
+    if (myLazyDfa != null) {
+      myStatsEngine = MatchStats.Engine.LAZY_DFA;
+      return myLazyDfa.matches(str, myNfaSimulator);
+    }
+    if (myNfaSimulator != null) {
+      myStatsEngine = MatchStats.Engine.NFA_SIMULATION;
+      return myNfaSimulator.matches(str);
+    }
+    myStatsEngine = MatchStats.Engine.BACKTRACKING;
+    mySearching = false;
+    startBudget();
+    clear(str.length());
+    return (backtrack(str, 0) >= 0);
+  }
+
+  /** Matches the region of the char array without copying it */
+  public boolean matches(char[] chars, int offset, int length) {
+    if (myRegion == null) {
+      myRegion = new CharArraySequence(chars, offset, length);
+    } else {
+      myRegion.reset(chars, offset, length);
+    }
+    return matches(myRegion);
+  }
+
+  /**
+   * Searches for a match of the regex in the input, see find(int). The input is read in place, so it shouldn't
+   * be modified while it's searched.
+   */
+  public boolean find(CharSequence input) {
+    myInput = input;
+    return find(0);
+  }
+
+  /** Searches for a match in the region of the char array, the match positions are relative to the offset */
+  public boolean find(char[] chars, int offset, int length) {
+    return find(new CharArraySequence(chars, offset, length));
+  }
+
+  /**
+   * Searches the input of the last find(CharSequence) call for a match starting at from or later. The leftmost
+   * match is found, the longest one if there are several. Returns whether the match is found, its bounds are
+   * available via start() and end(). Every match starts with the literal prefix of the regex (if it has one),
+   * so the search skips to the occurrences of the prefix.
+   */
+  public boolean find(int from) {
+    if (myInput == null) {
+      throw new IllegalStateException("No input to search");
+    }
+    if ((from < 0) || (from > myInput.length())) {
+      throw new IndexOutOfBoundsException("Illegal start position: " + from);
+    }
+    myMatchStart = -1;
+    myMatchEnd = -1;
+    resetStats();
+    if (!containsRequiredLiterals(myInput, from)) {
+      return false;
+    }
+    if (myNfaSimulator != null) {
+      myStatsEngine = MatchStats.Engine.NFA_SIMULATION;
+      if (myNfaSimulator.find(myInput, from, myLiteralPrefix)) {
+        myMatchStart = myNfaSimulator.getMatchStart();
+        myMatchEnd = myNfaSimulator.getMatchEnd();
+      }
+    } else {
+      myStatsEngine = MatchStats.Engine.BACKTRACKING;
+      mySearching = true;
+      startBudget();
+      clear(myInput.length());
+      /* memoized states are kept between the starts: they have failed regardless of the start */
+      for (int start = CharSequences.indexOf(myInput, myLiteralPrefix, from); start >= 0;
+           start = CharSequences.indexOf(myInput, myLiteralPrefix, start + 1)) {
+        int end = backtrack(myInput, start);
+        if (end >= 0) {
+          myMatchStart = start;
+          myMatchEnd = end;
+          break;
+        }
+        if (start == myInput.length()) {
+          break;
+        }
+      }
+    }
+    return (myMatchStart >= 0);
+  }
+
+  /**
+   * Whether the sequence contains a match of the regex, like find(CharSequence), but the match bounds aren't
+   * computed, so the sequence is searched by the lazy DFA (if the regex has one) in a single pass
+   */
+  boolean containsMatch(CharSequence str) {
+    if (myLazyDfa == null) {
+      return find(str);
+    }
+    myMatchStart = -1;
+    myMatchEnd = -1;
+    resetStats();
+    if (!containsRequiredLiterals(str, 0)) {
+      return false;
+    }
+    myStatsEngine = MatchStats.Engine.LAZY_DFA;
+    return myLazyDfa.getSearchDfa().matches(str, myNfaSimulator);
+  }
+
+  /** Returns the start position of the match found by the last search */
+  public int start() {
+    checkMatch();
+    return myMatchStart;
+  }
+
+  /** Returns the position after the match found by the last search */
+  public int end() {
+    checkMatch();
+    return myMatchEnd;
+  }
+
+  /**
+   * Feeds the next chunk of the input streamed to the matcher, see finish(). The automaton state is kept between
+   * the chunks, so the memory doesn't depend on the length of the input, and the chunks aren't retained. The only
+   * exception are the regexes with group recalls, which can't be matched by automata: their input is buffered
+   * and matched by finish(). Returns false if the match result is already known regardless of the rest of the
+   * input (either no continuation can match, or every one matches), then the rest needn't be fed.
+   * The matcher shouldn't be used for other matching until the stream is finished.
+   */
+  public boolean feed(CharSequence chunk) {
+    if (!myStreaming) {
+      startStream();
+    }
+    if (myStreamDecided) {
+      return false;
+    }
+    if (myCompiledDfa != null) {
+      int state = myStreamCompiledState;
+      for (int i = 0; (i < chunk.length()) && !myStreamDecided; ++i) {
+        state = myCompiledDfa.nextState(state, chunk.charAt(i));
+        myStreamDecided = myCompiledDfa.isDecided(state);
+      }
+      myStreamCompiledState = state;
+    } else if (myStreamDfaState != null) {
+      feedLazyDfa(chunk);
+    } else if (myNfaSimulator != null) {
+      myStreamDecided = !myNfaSimulator.feed(chunk, 0);
+    } else {
+      myStreamBuffer.append(chunk);
+    }
+    return !myStreamDecided;
+  }
+
+  /**
+   * Returns whether the whole input fed since the previous finish() matches the regex, the next feed starts
+   * a new stream
+   */
+  public boolean finish() {
+    if (!myStreaming) {
+      startStream();
+    }
+    myStreaming = false;
+    if (myCompiledDfa != null) {
+      return myCompiledDfa.isAccepting(myStreamCompiledState);
+    }
+    if (myStreamDfaState != null) {
+      return myStreamDfaState.isAccepting();
+    }
+    if (myNfaSimulator != null) {
+      return myNfaSimulator.streamAccepts();
+    }
+    String input = myStreamBuffer.toString();
+    myStreamBuffer.setLength(0);
+    return matches(input);
+  }
+
+  /**
+   * Enables or disables collecting the statistics of the matches, see getStats(). Disabled by default; the cost
+   * of the disabled statistics is a few counters in the backtracking loop.
+   */
+  public void setStatsEnabled(boolean enabled) {
+    myStatsEnabled = enabled;
+    resetStats();
+  }
+
+  /** Returns the statistics of the last matches or find call, collecting them should be enabled beforehand */
+  public MatchStats getStats() {
+    if (!myStatsEnabled) {
+      throw new IllegalStateException("Statistics aren't collected");
+    }
+    return new MatchStats(myStatsEngine, myNodeVisits, myBacktracks, myMaxChoicePoints, myGroupOperations,
+        myUndoneChanges, myRepeatChecks);
+  }
+
+  private void resetStats() {
+    myStatsEngine = MatchStats.Engine.NONE;
+    if (myStatsEnabled) {
+      myNodeVisits = 0;
+      myBacktracks = 0;
+      myMaxChoicePoints = 0;
+      myGroupOperations = 0;
+      myUndoneChanges = 0;
+      myRepeatChecks = 0;
+    }
+  }
+
+  private void startStream() {
+    myStreaming = true;
+    myStreamDecided = false;
+    myStreamDfaState = null;
+    if (myCompiledDfa != null) {
+      myStreamCompiledState = myCompiledDfa.getStartState();
+    } else if (myLazyDfa != null) {
+      myStreamFlushCount = myLazyDfa.getFlushCount();
+      myStreamDfaState = myLazyDfa.getStartState(myNfaSimulator);
+    } else if (myNfaSimulator != null) {
+      myNfaSimulator.startStream();
+    } else if (myStreamBuffer == null) {
+      myStreamBuffer = new StringBuilder();
+    }
+  }
+
+  private void feedLazyDfa(CharSequence chunk) {
+    DfaState state = myStreamDfaState;
+    for (int i = 0; i < chunk.length(); ++i) {
+      char ch = chunk.charAt(i);
+      DfaState nextState = myLazyDfa.getTransition(state, ch);
+      if (nextState == null) {
+        if (myLazyDfa.getFlushCount() - myStreamFlushCount >= LazyDfa.MAX_FLUSHES_PER_MATCH) {
+          /* the cache is thrashing, the rest of the stream is simulated from the alive Nodes of the state */
+          myStreamDfaState = null;
+          myNfaSimulator.startStream(state.getNodes());
+          myStreamDecided = !myNfaSimulator.feed(chunk, i);
+          return;
+        }
+        nextState = myLazyDfa.computeTransition(state, ch, myNfaSimulator);
+      }
+      state = nextState;
+      if (state.isDead()) {
+        myStreamDfaState = state;
+        myStreamDecided = true;
+        return;
+      }
+    }
+    myStreamDfaState = state;
+    myStreamDecided = myLazyDfa.isUniversal(state, myNfaSimulator);
+  }
+
+  private void checkMatch() {
+    if (myMatchStart < 0) {
+      throw new IllegalStateException("No match found");
+    }
+  }
+
+  /** Fast check that the string contains all the required literals of the regex after the given position */
+  private boolean containsRequiredLiterals(CharSequence str, int from) {
+    for (String literal : myRequiredLiterals) {
+      if (CharSequences.indexOf(str, literal, from) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  boolean isSearching() { return mySearching; }
+
+  String getRegexString() { return myRegexString; }
+
+  /** Returns the engine used by the last matches or find call, regardless of whether the statistics are enabled */
+  MatchStats.Engine getLastEngine() { return myStatsEngine; }
+
+  /**
+   * Depth-first search of a path from the start Node at strPos to the end Node, returns the position where the
+   * path ends or -1 if there's no such path. When searching, all the paths are tried and the longest match is
+   * returned. Alternatives which are not tried yet are stored as choice points on the heap rather than on
+   * the call stack, so the length of the string is limited only by memory.
+   */
+  private int backtrack(CharSequence str, int strPos) {
+    clearPath();
+    int longestEnd = -1;
+    Node node = myStartNode;
+    /*
+     * the counters are kept in local variables, so they cost next to nothing unless the statistics are enabled;
+     * the budget costs a single comparison per step
+     */
+    long steps = myStepsTaken;
+    long nextBudgetCheck = myNextBudgetCheck;
+    long numBacktracks = 0;
+    long numUndone = 0;
+    while (true) {
+      if (++steps >= nextBudgetCheck) {
+        checkBudget(steps);
+        nextBudgetCheck = myNextBudgetCheck;
+      }
+      int nextPos = node.enter(str, strPos, this);
+      if (nextPos >= 0) {
+        if (node == myEndNode) {
+          if (nextPos == str.length()) {
+            finishBacktracking(steps, numBacktracks, numUndone);
+            return nextPos;
+          }
+          longestEnd = Math.max(longestEnd, nextPos);
+        }
+        int minRunLength = node.minRunLength();
+        if ((minRunLength >= 0) && (nextPos - strPos > minRunLength)) {
+          pushChoicePoint(node, RUN_CHOICE, strPos + minRunLength, nextPos);
+        }
+        int numChoices = node.numChoices(this);
+        if (numChoices > 1) {
+          pushChoicePoint(node, 1, numChoices, nextPos);
+        }
+        if (numChoices > 0) {
+          node = node.getNextNodes().get(0);
+          strPos = nextPos;
+          continue;
+        }
+      }
+
+      /* the barriers of the atomic groups aren't alternatives, they are just passed */
+      while ((myNumChoicePoints > 0) &&
+             (myChoicePoints[(myNumChoicePoints - 1) * CHOICE_POINT_SIZE + 1] == ATOMIC_CHOICE)) {
+        --myNumChoicePoints;
+      }
+      if (myNumChoicePoints == 0) {
+        finishBacktracking(steps, numBacktracks, numUndone);
+        return longestEnd;
+      }
+
+      /* resume from the last choice point */
+      int top = (myNumChoicePoints - 1) * CHOICE_POINT_SIZE;
+      Node choiceNode = myNodes[myChoicePoints[top]];
+      int choice = myChoicePoints[top + 1];
+      strPos = myChoicePoints[top + 3];
+      ++numBacktracks;
+      numUndone += (myTrailSize - myChoicePoints[top + 4]) / 2;
+      undo(myChoicePoints[top + 4]);
+      if (choice == RUN_CHOICE) {
+
+        /*
+         * the run is shortened by one character, or to the previous occurrence of the character the next Node
+         * matches if it's a single character Node (the lengths in between fail at once)
+         */
+        node = choiceNode.getNextNodes().get(0);
+        int minEnd = myChoicePoints[top + 2];
+        int literal = node.literalChar();
+        --strPos;
+        while ((literal >= 0) && (strPos > minEnd) && ((strPos == str.length()) || (str.charAt(strPos) != literal))) {
+          --strPos;
+        }
+        if (strPos == minEnd) {
+          --myNumChoicePoints;
+        } else {
+          myChoicePoints[top + 3] = strPos;
+        }
+        continue;
+      }
+      if (choice + 1 == myChoicePoints[top + 2]) {
+        --myNumChoicePoints;
+      } else {
+        myChoicePoints[top + 1] = choice + 1;
+      }
+      node = choiceNode.getNextNodes().get(choice);
+    }
+  }
+
+  /** Publishes the counters of the backtracking loop */
+  private void finishBacktracking(long steps, long numBacktracks, long numUndone) {
+    if (myStatsEnabled) {
+      myNodeVisits += steps - myStepsTaken;
+      myBacktracks += numBacktracks;
+      myUndoneChanges += numUndone;
+    }
+    myStepsTaken = steps;
+  }
+
+  /** Starts counting the budget of a matches or find call */
+  private void startBudget() {
+    myStepsTaken = 0;
+    myNextBudgetCheck = getStepLimitCheck();
+    if (myBudget.hasTimeout()) {
+      myDeadline = System.nanoTime() + myBudget.getTimeoutNanos();
+      myNextBudgetCheck = Math.min(myNextBudgetCheck, DEADLINE_CHECK_INTERVAL);
+    }
+  }
+
+  /** Throws if the budget is exceeded after the given number of steps, otherwise schedules the next check */
+  private void checkBudget(long steps) {
+    if (steps > myBudget.getMaxSteps()) {
+      throw new MatchBudgetExceededException("Step limit exceeded", myRegexString, steps - 1);
+    }
+    if (myBudget.hasTimeout()) {
+      if (System.nanoTime() - myDeadline > 0) {
+        throw new MatchBudgetExceededException("Time limit exceeded", myRegexString, steps - 1);
+      }
+      myNextBudgetCheck = Math.min(getStepLimitCheck(), steps + DEADLINE_CHECK_INTERVAL);
+    }
+  }
+
+  /** Returns the step which exceeds the step limit, the maximum value if the steps aren't limited */
+  private long getStepLimitCheck() {
+    long maxSteps = myBudget.getMaxSteps();
+    return ((maxSteps == Long.MAX_VALUE) ? maxSteps : maxSteps + 1);
+  }
+
+  /**
+   * Records the visit of non-consuming Node, returns false if the Node was last visited on the current path at
+   * the same position (to avoid looping with empty string). Memoizable Node fails if it was visited at the same
+   * position at all, since the search from it has already failed or is in progress.
+   */
+  boolean visitAndCheck(Node node, int pos) {
+    int nodeId = node.getId();
+    if (myMemoizing && myMemoizable[nodeId]) {
+      long state = (long) nodeId * (myStrLength + 1) + pos;
+      long mask = 1L << state;
+      int word = (int) (state >>> 6);
+      if ((myVisitedStates[word] & mask) != 0) {
+        return false;
+      }
+      myVisitedStates[word] |= mask;
+      return true;
+    }
+    if (myLastVisitPositions[nodeId] == pos) {
+      return false;
+    }
+    log(-1 - nodeId, myLastVisitPositions[nodeId]);
+    myLastVisitPositions[nodeId] = pos;
+    return true;
+  }
+
+  void pushAtomicBarrier(Node node, int strPos) {
+    pushChoicePoint(node, ATOMIC_CHOICE, 0, strPos);
+  }
+
+  /**
+   * Discards the choice points above the last barrier along with the barrier. Atomic groups are properly nested,
+   * so the last barrier belongs to the group being closed.
+   */
+  void cutToAtomicBarrier() {
+    do {
+      assert(myNumChoicePoints > 0);
+      --myNumChoicePoints;
+    } while (myChoicePoints[myNumChoicePoints * CHOICE_POINT_SIZE + 1] != ATOMIC_CHOICE);
+  }
+
+  /** Forgets the visits of the Nodes at the position made on the current path, so they can be visited again */
+  void forgetVisits(int[] nodeIds, int pos) {
+    for (int nodeId : nodeIds) {
+      if (myLastVisitPositions[nodeId] == pos) {
+        log(-1 - nodeId, pos);
+        myLastVisitPositions[nodeId] = -1;
+      }
+    }
+  }
+
+  /** Starts counting the iterations of the repeat, which starts at strPos */
+  void startRepeat(int repeatId, int strPos) {
+    setRepeatCount(repeatId, 0);
+    setRepeatIterationStart(repeatId, strPos);
+  }
+
+  int getRepeatCount(int repeatId) {
+    if (myStatsEnabled) {
+      ++myRepeatChecks;
+    }
+    return myRepeatStates[2 * repeatId];
+  }
+
+  int getRepeatIterationStart(int repeatId) { return myRepeatStates[2 * repeatId + 1]; }
+
+  void setRepeatCount(int repeatId, int count) {
+    setRepeatState(2 * repeatId, count);
+  }
+
+  void setRepeatIterationStart(int repeatId, int strPos) {
+    setRepeatState(2 * repeatId + 1, strPos);
+  }
+
+  private void setRepeatState(int slot, int value) {
+    log(myGroupBounds.length + slot, myRepeatStates[slot]);
+    myRepeatStates[slot] = value;
+  }
+
+  int getGroupBegin(int groupId) { return myGroupBounds[2 * groupId]; }
+
+  int getGroupEnd(int groupId) { return myGroupBounds[2 * groupId + 1]; }
+
+  void openGroup(int groupId, int strPos) {
+    if (myStatsEnabled) {
+      ++myGroupOperations;
+    }
+    setGroupBound(2 * groupId, strPos);
+    setGroupBound(2 * groupId + 1, -1);
+  }
+
+  void closeGroup(int groupId, int strPos) {
+    assert(myGroupBounds[2 * groupId] >= 0);
+    if (myStatsEnabled) {
+      ++myGroupOperations;
+    }
+    setGroupBound(2 * groupId + 1, strPos);
+  }
+
+  private void setGroupBound(int slot, int strPos) {
+    log(slot, myGroupBounds[slot]);
+    myGroupBounds[slot] = strPos;
+  }
+
+  private void log(int slot, int previousValue) {
+    if (myTrailSize == myTrail.length) {
+      myTrail = Arrays.copyOf(myTrail, 2 * myTrail.length);
+    }
+    myTrail[myTrailSize++] = slot;
+    myTrail[myTrailSize++] = previousValue;
+  }
+
+  /** Undoes the logged changes until the trail is of the given size */
+  private void undo(int trailSize) {
+    while (myTrailSize > trailSize) {
+      int previousValue = myTrail[--myTrailSize];
+      int slot = myTrail[--myTrailSize];
+      if (slot >= myGroupBounds.length) {
+        myRepeatStates[slot - myGroupBounds.length] = previousValue;
+      } else if (slot >= 0) {
+        myGroupBounds[slot] = previousValue;
+      } else {
+        myLastVisitPositions[-1 - slot] = previousValue;
+      }
+    }
+  }
+
+  private void pushChoicePoint(Node node, int choice, int numChoices, int strPos) {
+    if ((myNumChoicePoints + 1) * CHOICE_POINT_SIZE > myChoicePoints.length) {
+      myChoicePoints = Arrays.copyOf(myChoicePoints, 2 * myChoicePoints.length);
+    }
+    int top = myNumChoicePoints * CHOICE_POINT_SIZE;
+    myChoicePoints[top] = node.getId();
+    myChoicePoints[top + 1] = choice;
+    myChoicePoints[top + 2] = numChoices;
+    myChoicePoints[top + 3] = strPos;
+    myChoicePoints[top + 4] = myTrailSize;
+    ++myNumChoicePoints;
+    if (myStatsEnabled && (myNumChoicePoints > myMaxChoicePoints)) {
+      myMaxChoicePoints = myNumChoicePoints;
+    }
+  }
+
+  /** Prepares the matching of a string of the given length, clears the memoized states */
+  private void clear(int strLength) {
+    myStrLength = strLength;
+    myMemoizing = false;
+    if (myMemoizable != null) {
+      long numStates = (long) myNodes.length * (strLength + 1);
+      if (numStates <= myMemoizationBudget && (numStates >>> 6) < Integer.MAX_VALUE) {
+        int numWords = (int) ((numStates + 63) >>> 6);
+        if (myVisitedStates == null || myVisitedStates.length < numWords) {
+          myVisitedStates = new long[numWords];
+        } else {
+          Arrays.fill(myVisitedStates, 0, numWords, 0);
+        }
+        myMemoizing = true;
+      }
+    }
+  }
+
+  /** Clears the state of the current path, memoized states are kept */
+  private void clearPath() {
+    Arrays.fill(myGroupBounds, -1);
+    Arrays.fill(myLastVisitPositions, -1);
+    Arrays.fill(myRepeatStates, 0);
+    myNumChoicePoints = 0;
+    myTrailSize = 0;
+  }
+}
@@ -0,0 +1,223 @@
+package com.eviltosha.regexpy;
+
+/**
+ * Matches strings by simulating the regex graph as Thompson NFA: all the Nodes alive at the current position
+ * are tracked simultaneously, so every Node is processed at most once per position and the matching time is
+ * O(n * m) (n is the string length, m is the number of Nodes). Applicable only to the graphs consisting of
+ * automaton compatible Nodes (i.e. without group recalls).
+ * <p>
+ * Stores matching-time information, so each Matcher uses its own simulator.
+ */
+class NfaSimulator {
+  private Node myStartNode;
+  private Node myEndNode;
+  private int myNumNodes;
+  private NodeSet myCurrentNodes;
+  private NodeSet myNextNodes;
+  /* start positions of the threads the alive Nodes belong to, indexed by Node ids (allocated on first search) */
+  private int[] myCurrentStarts;
+  private int[] myNextStarts;
+  private int myMatchStart;
+  private int myMatchEnd;
+  /* whether no char of the streamed input is consumed yet */
+  private boolean myStreamAtStart;
+
+  /** The end Node may be null for the graphs with several end Nodes, then only the alive Nodes are computed */
+  NfaSimulator(Node startNode, Node endNode, int numNodes) {
+    myStartNode = startNode;
+    myEndNode = endNode;
+    myNumNodes = numNodes;
+    myCurrentNodes = new NodeSet(numNodes);
+    myNextNodes = new NodeSet(numNodes);
+  }
+
+  boolean matches(CharSequence str) {
+    return run(str).contains(myEndNode);
+  }
+
+  /**
+   * Computes alive Nodes at the end of the string (the set is empty if the simulation stopped early), the set is
+   * valid until the next call to the simulator
+   */
+  NodeSet run(CharSequence str) {
+    myCurrentNodes.clear();
+    myCurrentNodes.addClosure(myStartNode, true, str.length() == 0);
+    runRemaining(str, 0);
+    return myCurrentNodes;
+  }
+
+  /** Same as run, but continues the simulation from strPos where the given consuming Nodes are alive */
+  NodeSet runFrom(CharSequence str, int strPos, Node[] nodes) {
+    myCurrentNodes.clear();
+    for (Node node : nodes) {
+      myCurrentNodes.add(node);
+    }
+    runRemaining(str, strPos);
+    return myCurrentNodes;
+  }
+
+  /** Computes alive Nodes at the beginning of the string, the set is valid until the next call to the simulator */
+  NodeSet startNodes(boolean atEnd) {
+    myCurrentNodes.clear();
+    myCurrentNodes.addClosure(myStartNode, true, atEnd);
+    return myCurrentNodes;
+  }
+
+  /**
+   * Computes alive Nodes after consuming ch by the given Nodes (not at the beginning of the string), the set is
+   * valid until the next call to the simulator
+   */
+  NodeSet stepNodes(Node[] nodes, char ch, boolean atEnd) {
+    myCurrentNodes.clear();
+    for (Node node : nodes) {
+      myCurrentNodes.add(node);
+    }
+    myNextNodes.clear();
+    myCurrentNodes.step(ch, myNextNodes, atEnd);
+    return myNextNodes;
+  }
+
+  /** Same as stepNodes, but a new match may start after ch as well: the closure of the start Node is added */
+  NodeSet searchStepNodes(Node[] nodes, char ch, boolean atEnd) {
+    stepNodes(nodes, ch, atEnd);
+    myNextNodes.addClosure(myStartNode, false, atEnd);
+    return myNextNodes;
+  }
+
+  /**
+   * Searches for the leftmost match (the longest among the leftmost ones) starting at from or later, in a single
+   * pass: each alive Node belongs to the thread started at some position, a new thread is started at every
+   * position where the literal prefix occurs until a match is found. When threads meet in the same Node, the one
+   * started earlier wins (threads are kept ordered by their starts), and after a match is found, the threads
+   * started later are dropped. When no thread is alive, the search skips to the next occurrence of the prefix.
+   */
+  boolean find(CharSequence str, int from, String prefix) {
+    if (myCurrentStarts == null) {
+      myCurrentStarts = new int[myNumNodes];
+      myNextStarts = new int[myNumNodes];
+    }
+    int length = str.length();
+    myMatchStart = -1;
+    myCurrentNodes.clear();
+    int strPos = from;
+    while (true) {
+      if (myMatchStart < 0) {
+        if (myCurrentNodes.isEmpty()) {
+          strPos = CharSequences.indexOf(str, prefix, strPos);
+          if (strPos < 0) {
+            return false;
+          }
+        }
+        if (CharSequences.startsWith(str, prefix, strPos)) {
+          addThread(myCurrentNodes, myCurrentStarts, myStartNode, strPos, strPos == 0, strPos == length);
+        }
+      }
+      if (myCurrentNodes.contains(myEndNode)) {
+        int start = myCurrentStarts[myEndNode.getId()];
+        if ((myMatchStart < 0) || (start <= myMatchStart)) {
+          myMatchStart = start;
+          myMatchEnd = strPos;
+        }
+      }
+      if ((strPos == length) || myCurrentNodes.isEmpty()) {
+        return (myMatchStart >= 0);
+      }
+
+      char ch = str.charAt(strPos);
+      myNextNodes.clear();
+      for (int i = 0; i < myCurrentNodes.size(); ++i) {
+        Node node = myCurrentNodes.get(i);
+        int start = myCurrentStarts[node.getId()];
+        if (node.consumesChar() && node.acceptsChar(ch) && ((myMatchStart < 0) || (start <= myMatchStart))) {
+          for (Node nextNode : node.getNextNodes()) {
+            addThread(myNextNodes, myNextStarts, nextNode, start, false, strPos + 1 == length);
+          }
+        }
+      }
+      NodeSet tmpNodes = myCurrentNodes;
+      myCurrentNodes = myNextNodes;
+      myNextNodes = tmpNodes;
+      int[] tmpStarts = myCurrentStarts;
+      myCurrentStarts = myNextStarts;
+      myNextStarts = tmpStarts;
+      ++strPos;
+    }
+  }
+
+  /**
+   * Starts simulation of the input streamed in chunks: the alive Nodes are kept between the chunks, computed as if
+   * the input continues (the end of the input is taken into account only by streamAccepts)
+   */
+  void startStream() {
+    myCurrentNodes.clear();
+    myCurrentNodes.addClosure(myStartNode, true, false);
+    myStreamAtStart = true;
+  }
+
+  /** Same as startStream, but the stream is continued where the given consuming Nodes are alive */
+  void startStream(Node[] nodes) {
+    myCurrentNodes.clear();
+    for (Node node : nodes) {
+      myCurrentNodes.add(node);
+    }
+    myStreamAtStart = false;
+  }
+
+  /** Feeds the chunk of the stream from chunkPos, returns false if no Node is alive (the input can't match) */
+  boolean feed(CharSequence chunk, int chunkPos) {
+    for (; chunkPos < chunk.length(); ++chunkPos) {
+      if (myCurrentNodes.isEmpty()) {
+        return false;
+      }
+      myNextNodes.clear();
+      myCurrentNodes.step(chunk.charAt(chunkPos), myNextNodes, false);
+      NodeSet tmp = myCurrentNodes;
+      myCurrentNodes = myNextNodes;
+      myNextNodes = tmp;
+      myStreamAtStart = false;
+    }
+    return !myCurrentNodes.isEmpty();
+  }
+
+  /**
+   * Whether the input streamed so far matches. The end anchors blocked while the stream was continuing are passed
+   * now, so the stream can't be fed any more.
+   */
+  boolean streamAccepts() {
+    for (int i = 0; i < myCurrentNodes.size(); ++i) {
+      Node node = myCurrentNodes.get(i);
+      if (!node.consumesChar() && !node.isPassable(myStreamAtStart, false) && node.isPassable(myStreamAtStart, true)) {
+        for (Node nextNode : node.getNextNodes()) {
+          myCurrentNodes.addClosure(nextNode, myStreamAtStart, true);
+        }
+      }
+    }
+    return myCurrentNodes.contains(myEndNode);
+  }
+
+  int getMatchStart() { return myMatchStart; }
+
+  int getMatchEnd() { return myMatchEnd; }
+
+  /** Adds the closure of the Node to the set, the Nodes which are not in the set yet join the thread */
+  private void addThread(NodeSet nodes, int[] starts, Node node, int start, boolean atStart, boolean atEnd) {
+    int size = nodes.size();
+    nodes.addClosure(node, atStart, atEnd);
+    for (int i = size; i < nodes.size(); ++i) {
+      starts[nodes.get(i).getId()] = start;
+    }
+  }
+
+  private void runRemaining(CharSequence str, int strPos) {
+    for (; strPos < str.length(); ++strPos) {
+      if (myCurrentNodes.isEmpty()) {
+        return;
+      }
+      myNextNodes.clear();
+      myCurrentNodes.step(str.charAt(strPos), myNextNodes, strPos + 1 == str.length());
+      NodeSet tmp = myCurrentNodes;
+      myCurrentNodes = myNextNodes;
+      myNextNodes = tmp;
+    }
+  }
+}
@@ -0,0 +1,677 @@
+package com.eviltosha.regexpy;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One node of the regex graph.
+ * <p>
+ * No Node stores any matcher-time information, thus multiple matchers can be used at the same time
+ * (or even concurrently)
+ */
+abstract class Node {
+  /** List of adjacent Nodes of this Node */
+  private List<Node> myNextNodes = new ArrayList<Node>();
+  /** Dense index of the Node within its graph, assigned after parsing */
+  private int myId = -1;
+
+  Node() { }
+
+  void addNextNode(Node node) {
+    myNextNodes.add(node);
+  }
+
+  /** Replaces the edge to oldNode with the edge to newNode, keeping its position (and thus its priority) */
+  void replaceNextNode(Node oldNode, Node newNode) {
+    myNextNodes.set(myNextNodes.indexOf(oldNode), newNode);
+  }
+
+  List<Node> getNextNodes() { return myNextNodes; }
+
+  int getId() { return myId; }
+
+  void setId(int id) { myId = id; }
+
+  /** Constructs a Node of the same kind without any edges, used for copying of quantified terms */
+  abstract Node copy();
+
+  /** Writes the kind of the Node and its parameters (not its edges), see RegexFormat */
+  abstract void write(DataOutputStream out) throws IOException;
+
+  /**
+   * Whether the Node depends only on the current position and character, so the graph containing it
+   * can be simulated as an automaton
+   */
+  boolean isAutomatonCompatible() { return true; }
+
+  /**
+   * Whether passing the Node depends only on the position (not on the groups captured or the iterations made on
+   * the way to it), so the Nodes leading only to such Nodes can be memoized by the backtracker
+   */
+  boolean isPathIndependent() { return isAutomatonCompatible(); }
+
+  /**
+   * Minimal number of characters the consuming Node can be passed with, if it can also be passed with any length
+   * between that and the length enter returns (backtracking then retries the shorter lengths), -1 otherwise
+   */
+  int minRunLength() { return -1; }
+
+  /** Whether the Node consumes exactly one character (for automaton simulation) */
+  boolean consumesChar() { return false; }
+
+  /** Whether the consuming Node accepts the given character (for automaton simulation) */
+  boolean acceptsChar(char ch) { return false; }
+
+  /**
+   * Adds boundaries of the char ranges the consuming Node distinguishes: chars b - 1 and b may be treated
+   * differently for each boundary b (for automaton simulation)
+   */
+  void addCharBoundaries(Set<Integer> boundaries) { }
+
+  /** The only character the Node matches, or -1 if it's not a single character Node */
+  int literalChar() { return -1; }
+
+  /** Whether the non-consuming Node can be passed at the position with given properties (for automaton simulation) */
+  boolean isPassable(boolean atStart, boolean atEnd) { return true; }
+
+  /** Check whether strPos is within bounds and perform actions required upon visiting the node */
+  protected boolean checkAndVisit(CharSequence str, int strPos, Matcher matcher) {
+    return ((strPos <= str.length()) && matcher.visitAndCheck(this, strPos));
+  }
+
+  /**
+   * Performs the check and the actions of the Node at strPos during backtracking (all the changes of the matcher
+   * state are undone by the matcher when it backtracks). Returns position after the Node, or -1 if the Node
+   * can't be passed.
+   */
+  protected abstract int enter(CharSequence str, int strPos, Matcher matcher);
+
+  /** Returns how many of the adjacent Nodes (in their order) should be tried after the Node is entered */
+  protected int numChoices(Matcher matcher) {
+    return myNextNodes.size();
+  }
+}
+
+/** A Node representing character range (like [a-zA-Z]) */
+class CharRangeNode extends Node {
+  private CharSet myCharSet;
+
+  CharRangeNode(CharSet charSet) {
+    super();
+    myCharSet = charSet;
+  }
+
+  @Override
+  Node copy() { return new CharRangeNode(myCharSet); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.CHAR_RANGE);
+    RegexFormat.writeCharSet(out, myCharSet);
+  }
+
+  /* consuming Nodes can't be looped with empty string, thus they don't need to be visited */
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    return (((strPos < str.length()) && myCharSet.contains(str.charAt(strPos))) ? (strPos + 1) : -1);
+  }
+
+  @Override
+  boolean consumesChar() { return true; }
+
+  @Override
+  boolean acceptsChar(char ch) { return myCharSet.contains(ch); }
+
+  @Override
+  void addCharBoundaries(Set<Integer> boundaries) {
+    myCharSet.addBoundaries(boundaries);
+  }
+}
+
+class EmptyNode extends Node {
+  EmptyNode() { super(); }
+
+  @Override
+  Node copy() { return new EmptyNode(); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.EMPTY);
+  }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    return (checkAndVisit(str, strPos, matcher) ? strPos : -1);
+  }
+}
+
+/** A Node representing group opening, performs required actions for group recalling */
+class OpenGroupNode extends EmptyNode {
+  private int myGroupId;
+
+  OpenGroupNode(int id) {
+    super();
+    myGroupId = id;
+  }
+
+  @Override
+  Node copy() { return new OpenGroupNode(myGroupId); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.OPEN_GROUP);
+    out.writeInt(myGroupId);
+  }
+
+  int getGroupId() { return myGroupId; }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    if (!checkAndVisit(str, strPos, matcher)) { return -1; }
+    matcher.openGroup(myGroupId, strPos);
+    return strPos;
+  }
+}
+
+/** A Node representing group closing, performs required actions for group recalling */
+class CloseGroupNode extends EmptyNode {
+  private int myGroupId;
+
+  CloseGroupNode(int id) {
+    super();
+    myGroupId = id;
+  }
+
+  @Override
+  Node copy() { return new CloseGroupNode(myGroupId); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.CLOSE_GROUP);
+    out.writeInt(myGroupId);
+  }
+
+  int getGroupId() { return myGroupId; }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    if (!checkAndVisit(str, strPos, matcher)) { return -1; }
+    matcher.closeGroup(myGroupId, strPos);
+    return strPos;
+  }
+}
+
+/**
+ * A Node representing the end of the regular expression. Successfully entering it means the whole string
+ * is matched.
+ * Also it's a CloseGroupNode for group 0.
+ */
+class EndNode extends CloseGroupNode {
+  EndNode() {
+    /* EndNode always has capturing id = 0 */
+    super(0);
+  }
+
+  @Override
+  Node copy() { return new EndNode(); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.END);
+  }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    /* matches found by searching may end anywhere */
+    if ((strPos != str.length()) && !matcher.isSearching()) { return -1; }
+    matcher.closeGroup(0, strPos);
+    return strPos;
+  }
+}
+
+/** A Node representing group recall operation (like \\2) */
+class GroupRecallNode extends Node {
+  private int myGroupId;
+
+  GroupRecallNode(int id) {
+    super();
+    myGroupId = id;
+  }
+
+  @Override
+  Node copy() { return new GroupRecallNode(myGroupId); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.GROUP_RECALL);
+    out.writeInt(myGroupId);
+  }
+
+  int getGroupId() { return myGroupId; }
+
+  @Override
+  boolean isAutomatonCompatible() { return false; }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    if (!checkAndVisit(str, strPos, matcher)) { return -1; }
+    int begin = matcher.getGroupBegin(myGroupId);
+    int end = matcher.getGroupEnd(myGroupId);
+    if ((begin < 0) || (end < 0) || (strPos + (end - begin) > str.length()) ||
+        !CharSequences.regionMatches(str, begin, str, strPos, end - begin)) {
+      return -1;
+    }
+    return strPos + (end - begin);
+  }
+}
+
+/** A Node that matches a single specified character */
+class SymbolNode extends Node {
+  private char mySymbol;
+
+  SymbolNode(char symbol) {
+    super();
+    mySymbol = symbol;
+  }
+
+  @Override
+  Node copy() { return new SymbolNode(mySymbol); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.SYMBOL);
+    out.writeChar(mySymbol);
+  }
+
+  @Override
+  boolean consumesChar() { return true; }
+
+  @Override
+  boolean acceptsChar(char ch) { return (ch == mySymbol); }
+
+  @Override
+  int literalChar() { return mySymbol; }
+
+  @Override
+  void addCharBoundaries(Set<Integer> boundaries) {
+    boundaries.add((int) mySymbol);
+    boundaries.add(mySymbol + 1);
+  }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    return (((strPos < str.length()) && (str.charAt(strPos) == mySymbol)) ? (strPos + 1) : -1);
+  }
+}
+
+/**
+ * A Node that matches a literal string, fused from a run of single character Nodes. It consumes several characters,
+ * thus it's used only in the graphs matched by backtracking (see GraphOptimizer).
+ */
+class LiteralNode extends Node {
+  private String myLiteral;
+
+  LiteralNode(String literal) {
+    super();
+    myLiteral = literal;
+  }
+
+  @Override
+  Node copy() { return new LiteralNode(myLiteral); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.LITERAL);
+    RegexFormat.writeString(out, myLiteral);
+  }
+
+  @Override
+  boolean isAutomatonCompatible() { return false; }
+
+  @Override
+  boolean isPathIndependent() { return true; }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    return (CharSequences.startsWith(str, myLiteral, strPos) ? (strPos + myLiteral.length()) : -1);
+  }
+}
+
+/** A Node that matches any single character (a dot operation) */
+class AnySymbolNode extends Node {
+  AnySymbolNode() { super(); }
+
+  @Override
+  Node copy() { return new AnySymbolNode(); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.ANY_SYMBOL);
+  }
+
+  @Override
+  boolean consumesChar() { return true; }
+
+  @Override
+  boolean acceptsChar(char ch) { return true; }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    return ((strPos < str.length()) ? (strPos + 1) : -1);
+  }
+}
+
+/**
+ * A Node starting a body (a quantifier iteration or an atomic group) which must be matched regardless of the visits
+ * made before it: the visits of its Nodes made at the same position are forgotten when it's entered. Otherwise
+ * the empty loop detection would reject the paths which are tried first (e.g. the empty iteration of "c*" in
+ * "(?>c*|a)*" at the position the previous iteration has reached).
+ */
+interface BodyStartNode {
+  /** Whether the Node ends the body, the Nodes reachable from the start without passing the end form the body */
+  boolean isBodyEnd(Node node);
+
+  /** Passes the ids of the body Nodes, assigned after the graph is indexed */
+  void setBodyNodeIds(int[] bodyNodeIds);
+}
+
+/**
+ * A Node that opens an atomic group (like (?>ab|a)) or a possessive quantifier (like a*+). It places a barrier on
+ * the choice stack of the matcher, backtracking passes the barrier.
+ */
+class AtomicStartNode extends EmptyNode implements BodyStartNode {
+  /** Id shared with the matching AtomicEndNode */
+  private int myAtomicId;
+  private int[] myBodyNodeIds = new int[0];
+
+  AtomicStartNode(int atomicId) {
+    super();
+    myAtomicId = atomicId;
+  }
+
+  @Override
+  Node copy() { return new AtomicStartNode(myAtomicId); }
+
+  int getAtomicId() { return myAtomicId; }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.ATOMIC_START);
+    out.writeInt(myAtomicId);
+  }
+
+  @Override
+  public boolean isBodyEnd(Node node) {
+    return ((node instanceof AtomicEndNode) && (((AtomicEndNode) node).getAtomicId() == myAtomicId));
+  }
+
+  @Override
+  public void setBodyNodeIds(int[] bodyNodeIds) { myBodyNodeIds = bodyNodeIds; }
+
+  /* the alternatives tried depend on the path */
+  @Override
+  boolean isAutomatonCompatible() { return false; }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    if (!checkAndVisit(str, strPos, matcher)) { return -1; }
+    matcher.forgetVisits(myBodyNodeIds, strPos);
+    matcher.pushAtomicBarrier(this, strPos);
+    return strPos;
+  }
+}
+
+/**
+ * A Node that closes an atomic group or a possessive quantifier: once it's passed, the alternatives left inside
+ * (the choice points above the barrier) are discarded, so backtracking never re-enters the group
+ */
+class AtomicEndNode extends Node {
+  private int myAtomicId;
+
+  AtomicEndNode(int atomicId) {
+    super();
+    myAtomicId = atomicId;
+  }
+
+  @Override
+  Node copy() { return new AtomicEndNode(myAtomicId); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.ATOMIC_END);
+    out.writeInt(myAtomicId);
+  }
+
+  int getAtomicId() { return myAtomicId; }
+
+  @Override
+  boolean isAutomatonCompatible() { return false; }
+
+  /*
+   * the Node isn't visited: a group matching empty string closes at the position it was closed by the previous
+   * iteration of a loop, its match must be final as well (empty loops are detected by the start Node)
+   */
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    matcher.cutToAtomicBarrier();
+    return strPos;
+  }
+}
+
+/**
+ * A Node that matches a run of characters accepted by the single character Node, its length is within the range
+ * (like [0-9]{1,5000}). The longest run is tried first, then backtracking shortens it one character at a time.
+ */
+class CharRunNode extends Node {
+  private Node myCharNode;
+  private InfinityRange myRange;
+
+  CharRunNode(Node charNode, InfinityRange range) {
+    super();
+    assert(charNode.consumesChar());
+    myCharNode = charNode.copy();
+    myRange = range;
+  }
+
+  @Override
+  Node copy() { return new CharRunNode(myCharNode, myRange); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.CHAR_RUN);
+    RegexFormat.writeRange(out, myRange);
+    myCharNode.write(out);
+  }
+
+  /* the run consumes several characters */
+  @Override
+  boolean isAutomatonCompatible() { return false; }
+
+  @Override
+  boolean isPathIndependent() { return true; }
+
+  @Override
+  int minRunLength() { return myRange.getBegin(); }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    int limit = str.length();
+    if (myRange.endIsSet() && (limit - strPos > myRange.getEnd())) {
+      limit = strPos + myRange.getEnd();
+    }
+    int end = strPos;
+    while ((end < limit) && myCharNode.acceptsChar(str.charAt(end))) {
+      ++end;
+    }
+    return ((end - strPos >= myRange.getBegin()) ? end : -1);
+  }
+}
+
+/**
+ * A Node that starts the iterations of a range quantifier (like {3, 4} or {3, } or {3}), whose term is too large
+ * to be repeated. The iterations are counted by the matcher separately for each repetition, so the counters of
+ * nested quantifiers start over with every iteration of the outer one.
+ */
+class RepeatStartNode extends EmptyNode {
+  private int myRepeatId;
+
+  RepeatStartNode(int repeatId) {
+    super();
+    myRepeatId = repeatId;
+  }
+
+  @Override
+  Node copy() { return new RepeatStartNode(myRepeatId); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.REPEAT_START);
+    out.writeInt(myRepeatId);
+  }
+
+  /* iteration counters aren't representable by a set of simultaneously alive nodes */
+  @Override
+  boolean isAutomatonCompatible() { return false; }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    if (!checkAndVisit(str, strPos, matcher)) { return -1; }
+    matcher.startRepeat(myRepeatId, strPos);
+    return strPos;
+  }
+}
+
+/**
+ * A Node that ends an iteration of a range quantifier. It has exactly two adjacent Nodes: the RepeatLoopNode
+ * (next iteration) and the Node after the quantifier (exit).
+ */
+class RepeatEndNode extends Node {
+  private int myRepeatId;
+  private InfinityRange myRange;
+
+  RepeatEndNode(int repeatId, InfinityRange range) {
+    super();
+    myRepeatId = repeatId;
+    myRange = range;
+  }
+
+  @Override
+  Node copy() { return new RepeatEndNode(myRepeatId, myRange); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.REPEAT_END);
+    out.writeInt(myRepeatId);
+    RegexFormat.writeRange(out, myRange);
+  }
+
+  int getRepeatId() { return myRepeatId; }
+
+  @Override
+  boolean isAutomatonCompatible() { return false; }
+
+  /*
+   * the Node isn't visited: the empty iteration reaches it at the position of the previous one. Since the empty
+   * iteration can be repeated any number of times, it completes the lower bound, and the loop is left.
+   */
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    int count = matcher.getRepeatCount(myRepeatId) + 1;
+    if (strPos == matcher.getRepeatIterationStart(myRepeatId)) {
+      count = Math.max(count, myRange.getBegin());
+    }
+    matcher.setRepeatCount(myRepeatId, count);
+    return strPos;
+  }
+
+  /* exit is allowed only when the lower bound is reached */
+  @Override
+  protected int numChoices(Matcher matcher) {
+    return (myRange.checkLower(matcher.getRepeatCount(myRepeatId)) ? 2 : 1);
+  }
+}
+
+/** A Node that starts the next iteration of a range quantifier, unless the upper bound is reached */
+class RepeatLoopNode extends Node implements BodyStartNode {
+  private int myRepeatId;
+  private InfinityRange myRange;
+  private int[] myBodyNodeIds = new int[0];
+
+  RepeatLoopNode(int repeatId, InfinityRange range) {
+    super();
+    myRepeatId = repeatId;
+    myRange = range;
+  }
+
+  @Override
+  Node copy() { return new RepeatLoopNode(myRepeatId, myRange); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.REPEAT_LOOP);
+    out.writeInt(myRepeatId);
+    RegexFormat.writeRange(out, myRange);
+  }
+
+  @Override
+  public boolean isBodyEnd(Node node) {
+    return ((node instanceof RepeatEndNode) && (((RepeatEndNode) node).getRepeatId() == myRepeatId));
+  }
+
+  @Override
+  public void setBodyNodeIds(int[] bodyNodeIds) { myBodyNodeIds = bodyNodeIds; }
+
+  @Override
+  boolean isAutomatonCompatible() { return false; }
+
+  /* an empty iteration isn't repeated, so the loop never spins on the same position and the iteration is a body */
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    if ((strPos == matcher.getRepeatIterationStart(myRepeatId)) ||
+        !myRange.checkUpper(matcher.getRepeatCount(myRepeatId) + 1)) {
+      return -1;
+    }
+    matcher.setRepeatIterationStart(myRepeatId, strPos);
+    matcher.forgetVisits(myBodyNodeIds, strPos);
+    return strPos;
+  }
+}
+
+class AnchorStartStringNode extends EmptyNode {
+  @Override
+  Node copy() { return new AnchorStartStringNode(); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.ANCHOR_START);
+  }
+
+  @Override
+  boolean isPassable(boolean atStart, boolean atEnd) { return atStart; }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    return ((checkAndVisit(str, strPos, matcher) && (strPos == 0)) ? strPos : -1);
+  }
+}
+
+class AnchorEndStringNode extends EmptyNode {
+  @Override
+  Node copy() { return new AnchorEndStringNode(); }
+
+  @Override
+  void write(DataOutputStream out) throws IOException {
+    out.writeByte(RegexFormat.ANCHOR_END);
+  }
+
+  @Override
+  boolean isPassable(boolean atStart, boolean atEnd) { return atEnd; }
+
+  @Override
+  protected int enter(CharSequence str, int strPos, Matcher matcher) {
+    return ((checkAndVisit(str, strPos, matcher) && (strPos == str.length())) ? strPos : -1);
+  }
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.eviltosha.regexpy;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of graph Nodes indexed by their ids (sparse set), supports constant time insertion, lookup
+ * and clearing, and iteration in insertion order.
+ */
+class NodeSet {
+  private Node[] myNodes;
+  private int[] myDense;
+  private int[] mySparse;
+  private int mySize = 0;
+  /* explicit stack for epsilon closure computation */
+  private Node[] myStack;
+
+  NodeSet(int capacity) {
+    myNodes = new Node[capacity];
+    myDense = new int[capacity];
+    mySparse = new int[capacity];
+    myStack = new Node[capacity];
+  }
+
+  boolean contains(Node node) {
+    int index = mySparse[node.getId()];
+    return ((index < mySize) && (myDense[index] == node.getId()));
+  }
+
+  /** Adds node to the set, returns false if the node is already present */
+  boolean add(Node node) {
+    if (contains(node)) {
+      return false;
+    }
+    mySparse[node.getId()] = mySize;
+    myDense[mySize] = node.getId();
+    myNodes[mySize] = node;
+    ++mySize;
+    return true;
+  }
+
+  /**
+   * Adds node and all the Nodes reachable from it without consuming characters to the set. Non-consuming Nodes
+   * which can't be passed at the position (like anchors) are added, but the Nodes after them are not.
+   */
+  void addClosure(Node node, boolean atStart, boolean atEnd) {
+    int stackSize = 0;
+    myStack[stackSize++] = node;
+    while (stackSize > 0) {
+      Node current = myStack[--stackSize];
+      if (!add(current) || current.consumesChar() || !current.isPassable(atStart, atEnd)) {
+        continue;
+      }
+      List<Node> nextNodes = current.getNextNodes();
+      for (int i = nextNodes.size() - 1; i >= 0; --i) {
+        if (!contains(nextNodes.get(i))) {
+          if (stackSize == myStack.length) {
+            myStack = Arrays.copyOf(myStack, 2 * myStack.length);
+          }
+          myStack[stackSize++] = nextNodes.get(i);
+        }
+      }
+    }
+  }
+
+  /** Adds closures of the Nodes following the consuming Nodes of the set which accept ch to the target set */
+  void step(char ch, NodeSet target, boolean atEnd) {
+    for (int i = 0; i < mySize; ++i) {
+      Node node = myNodes[i];
+      if (node.consumesChar() && node.acceptsChar(ch)) {
+        List<Node> nextNodes = node.getNextNodes();
+        for (int j = 0; j < nextNodes.size(); ++j) {
+          target.addClosure(nextNodes.get(j), false, atEnd);
+        }
+      }
+    }
+  }
+
+  Node get(int index) { return myNodes[index]; }
+
+  int size() { return mySize; }
+
+  boolean isEmpty() { return (mySize == 0); }
+
+  void clear() { mySize = 0; }
+}
@@ -0,0 +1,1069 @@
+package com.eviltosha.regexpy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Class for storing compiled representation of the regular expression.
+ */
+public class Regex {
+  /** Maximal number of Nodes a range quantifier is allowed to construct by repeating its term */
+  private static final int MAX_REPEATED_NODES = 1000;
+  /** Default memory limit of the lazy DFA cache, in bytes */
+  public static final long DEFAULT_DFA_CACHE_SIZE = 1 << 20;
+  /** Default limit of the number of (Node, position) states the backtracker memoizes, in bits */
+  public static final long DEFAULT_MEMOIZATION_BUDGET = 256 * 1024;
+  /** Number of regexes cached by compile */
+  public static final int COMPILE_CACHE_SIZE = 1024;
+  /** Minimal number of strings matched by a single task of matchAll */
+  private static final int MIN_BATCH_SIZE = 64;
+  /** Number of tasks per thread matchAll splits the strings into, so that the threads are evenly loaded */
+  private static final int BATCHES_PER_THREAD = 4;
+
+  private static final RegexCache ourCompileCache = new RegexCache(COMPILE_CACHE_SIZE);
+
+  private String myRegexString;
+  private Node myStartNode = new OpenGroupNode(0);
+  private Node myEndNode = new EndNode();
+  private int myNumGroups = 0;
+  /** Number of range quantifiers counted by the Repeat Nodes, each one has its iteration counter in the matcher */
+  private int myNumRepeats = 0;
+  /** Number of atomic groups (including possessive quantifiers), used for pairing their start and end Nodes */
+  private int myNumAtomicGroups = 0;
+  /**
+   * Quantified single character terms found by the parser: entry Node of the quantifier mapped to the CharRunNode
+   * (linked to the exit Node) which replaces the loop if the regex is matched by backtracking
+   */
+  private Map<Node, Node> myCharLoops = new HashMap<Node, Node>();
+  /**
+   * Positions of the opening brackets of the groups quantified by possessive quantifiers, found by the parser. Their
+   * loops are inside atomic bodies, which is known only after they're parsed, so such regexes are parsed twice.
+   */
+  private Set<Integer> myPossessiveGroups = new HashSet<Integer>();
+  /** All the Nodes of the graph, indexed by their ids */
+  private Node[] myNodes;
+  /** Whether the graph can be simulated as an automaton (i.e. doesn't need backtracking) */
+  private boolean myAutomatonCompatible = true;
+  /** DFA shared by all the matchers, null if the regex isn't automaton compatible or the DFA is disabled */
+  private LazyDfa myLazyDfa;
+  /** Minimal DFA compiled ahead of time, null unless requested by compileDfa */
+  private CompiledDfa myCompiledDfa;
+  /** Match loop of the compiled DFA generated as a JVM class, null unless requested by generateClass */
+  private GeneratedDfa myGeneratedDfa;
+  /** Nodes whose outcome doesn't depend on the path to them, null if the regex is automaton compatible */
+  private boolean[] myMemoizable;
+  private long myMemoizationBudget = DEFAULT_MEMOIZATION_BUDGET;
+  private MatchBudget myMatchBudget = MatchBudget.UNLIMITED;
+  /** Characters every match starts with, used for skipping to the candidate positions when searching */
+  private String myLiteralPrefix;
+  /** Literals every match contains, the strings lacking any of them are rejected without running the engines */
+  private List<String> myRequiredLiterals;
+  /** Matchers reused by matches(CharSequence) within each thread, they take the new settings when it's changed */
+  private final ThreadLocal<Matcher> myThreadMatchers = new ThreadLocal<Matcher>() {
+    @Override
+    protected Matcher initialValue() {
+      return matcher();
+    }
+  };
+  /** Incremented on every change of the settings the matchers take from the regex (DFAs, budgets) */
+  private int myConfigVersion = 0;
+  /** Whether the regex is shared by the users of a RegexCache, then its settings can't be changed */
+  private boolean myShared = false;
+
+  public Regex(String regex) throws RegexSyntaxException {
+    myRegexString = regex;
+    if (RegexEvents.isCompileEnabled()) {
+      RegexEvents.compile(this);
+    } else {
+      build();
+    }
+  }
+
+  /** Constructs the regex from its deserialized graph, the Nodes are in the order of their ids (see RegexFormat) */
+  Regex(String regex, Node[] nodes, Node endNode, int numGroups, int numRepeats, String literalPrefix,
+        List<String> requiredLiterals) {
+    myRegexString = regex;
+    myNodes = nodes;
+    myStartNode = nodes[0];
+    myEndNode = endNode;
+    myNumGroups = numGroups;
+    myNumRepeats = numRepeats;
+    myLiteralPrefix = literalPrefix;
+    myRequiredLiterals = Collections.unmodifiableList(requiredLiterals);
+    myCharLoops = null;
+    myPossessiveGroups = null;
+    for (int i = 0; i < nodes.length; ++i) {
+      nodes[i].setId(i);
+      myAutomatonCompatible &= nodes[i].isAutomatonCompatible();
+    }
+    if (!myAutomatonCompatible) {
+      myMemoizable = findMemoizableNodes();
+      findBodies();
+    }
+    setDfaCacheSize(DEFAULT_DFA_CACHE_SIZE);
+  }
+
+  /** Parses the regex and prepares the graph for the engines */
+  void build() throws RegexSyntaxException {
+    parse(myRegexString);
+    if (!myPossessiveGroups.isEmpty()) {
+      myStartNode = new OpenGroupNode(0);
+      myEndNode = new EndNode();
+      myNumGroups = 0;
+      myNumRepeats = 0;
+      myNumAtomicGroups = 0;
+      myCharLoops.clear();
+      parse(myRegexString);
+    }
+    myPossessiveGroups = null;
+    indexNodes();
+    myLiteralPrefix = findLiteralPrefix();
+    myRequiredLiterals = Collections.unmodifiableList(RequiredLiterals.find(myStartNode, myEndNode, myNodes));
+
+    /* the analyses above rely on single character Nodes, so the Nodes specific to backtracking are made afterwards */
+    if (!myAutomatonCompatible) {
+      for (Map.Entry<Node, Node> charLoop : myCharLoops.entrySet()) {
+        charLoop.getKey().getNextNodes().clear();
+        charLoop.getKey().addNextNode(charLoop.getValue());
+      }
+    }
+    myCharLoops = null;
+    GraphOptimizer.removeEpsilonNodes(myStartNode, myEndNode, myNumGroups);
+    reindexNodes();
+    if (!myAutomatonCompatible) {
+      if (GraphOptimizer.fuseLiterals(myNodes)) {
+        reindexNodes();
+      }
+      myMemoizable = findMemoizableNodes();
+      findBodies();
+    }
+    setDfaCacheSize(DEFAULT_DFA_CACHE_SIZE);
+  }
+
+  /**
+   * Returns the compiled regex from the cache shared by the whole application, compiles it on cache miss.
+   * The returned Regex may be shared with other callers, thus it can't be reconfigured: the methods changing its
+   * settings (setDfaCacheSize, compileDfa, generateClass, setMemoizationBudget, setMatchBudget) throw
+   * UnsupportedOperationException. A differently configured regex is constructed by new Regex.
+   */
+  public static Regex compile(String regex) throws RegexSyntaxException {
+    return ourCompileCache.get(regex);
+  }
+
+  /** Returns the cache used by compile, e.g. for monitoring of its hit/miss/eviction counters */
+  public static RegexCache getCompileCache() {
+    return ourCompileCache;
+  }
+
+  /**
+   * Writes the compiled regex in a compact versioned binary format, which is read by readFrom without parsing.
+   * Several regexes can be written one after another, e.g. into a precompiled bundle. The stream isn't closed.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    RegexFormat.write(this, out);
+  }
+
+  /**
+   * Reads the regex written by writeTo at the position of the buffer (e.g. a memory-mapped bundle), and advances
+   * the position past it. Throws IllegalArgumentException if the data isn't a compiled regex, was written by
+   * an incompatible version, or is truncated or corrupted. Only the regex itself is read: the configuration
+   * (DFA cache size, compiled DFA, budgets) is the default one.
+   */
+  public static Regex readFrom(ByteBuffer buffer) throws IllegalArgumentException {
+    return RegexFormat.read(buffer);
+  }
+
+  /** Constructs object Matcher, which can be used to match regex against Strings. */
+  public Matcher matcher() {
+    return new Matcher(this);
+  }
+
+  /**
+   * Sets the approximate memory limit (in bytes) of the lazy DFA cache shared by the matchers of this regex,
+   * the cache is flushed when the limit is exceeded. Too small limit (like 0) disables the DFA, then the regex
+   * is matched by NFA simulation. Matchers created before the call keep using the previous cache.
+   */
+  public void setDfaCacheSize(long cacheSize) {
+    checkNotShared();
+    resetThreadMatchers();
+    myLazyDfa = null;
+    if (myAutomatonCompatible) {
+      LazyDfa lazyDfa = new LazyDfa(new Node[] {myEndNode}, myNodes, cacheSize);
+      if (lazyDfa.isUsable(myNodes.length)) {
+        myLazyDfa = lazyDfa;
+      }
+    }
+  }
+
+  /**
+   * Eagerly compiles the regex into minimal DFA, which is used by the matchers created afterwards and matches
+   * without allocations. Intended for small fixed patterns. Returns false (and the regex remains matched as before)
+   * if the regex isn't automaton compatible or the DFA would have more than maxStates states.
+   */
+  public boolean compileDfa(int maxStates) {
+    checkNotShared();
+    if (!myAutomatonCompatible) {
+      return false;
+    }
+    CompiledDfa compiledDfa = CompiledDfa.compile(myStartNode, myEndNode, myNodes, maxStates);
+    if (compiledDfa == null) {
+      return false;
+    }
+    myCompiledDfa = compiledDfa;
+    resetThreadMatchers();
+    return true;
+  }
+
+  /**
+   * Compiles the regex into minimal DFA (see compileDfa) and generates a JVM class implementing the match loop of
+   * the DFA, with the transitions compiled into comparisons of chars with constants. Used by the matchers created
+   * afterwards, intended for the hottest fixed patterns. Requires hidden classes (Java 15+); returns false (and the
+   * regex remains matched as before) if the class can't be generated or the DFA has more than maxStates states.
+   */
+  public boolean generateClass(int maxStates) {
+    checkNotShared();
+    if (!myAutomatonCompatible) {
+      return false;
+    }
+    CompiledDfa compiledDfa = myCompiledDfa;
+    if ((compiledDfa == null) || (compiledDfa.getNumStates() > maxStates)) {
+      compiledDfa = CompiledDfa.compile(myStartNode, myEndNode, myNodes, maxStates);
+      if (compiledDfa == null) {
+        return false;
+      }
+    }
+    GeneratedDfa generatedDfa = DfaClassGenerator.generate(compiledDfa);
+    if (generatedDfa == null) {
+      return false;
+    }
+    myCompiledDfa = compiledDfa;
+    myGeneratedDfa = generatedDfa;
+    resetThreadMatchers();
+    return true;
+  }
+
+  /**
+   * Sets the limit (in bits, one per Node and position) of the memory the backtracker uses for remembering the
+   * already explored states, so that no state is explored twice. It bounds the matching time of regexes with group
+   * recalls by the product of the number of Nodes and the string length, as long as the product fits in the limit;
+   * longer strings are matched by plain backtracking. Affects the matchers created afterwards.
+   */
+  public void setMemoizationBudget(long budget) {
+    checkNotShared();
+    myMemoizationBudget = budget;
+    resetThreadMatchers();
+  }
+
+  /**
+   * Sets the default budget of the matches and find calls of the matchers created afterwards (including
+   * matches(CharSequence) of the regex), see MatchBudget. Intended for the patterns from untrusted sources.
+   */
+  public void setMatchBudget(MatchBudget budget) {
+    checkNotShared();
+    myMatchBudget = budget;
+    resetThreadMatchers();
+  }
+
+  /** Returns the literal strings which every matching string contains (for diagnostics), the longest first */
+  public List<String> getRequiredLiterals() {
+    return myRequiredLiterals;
+  }
+
+  String getRegexString() { return myRegexString; }
+
+  Node getStartNode() { return myStartNode; }
+
+  Node getEndNode() { return myEndNode; }
+
+  int getNumGroups() { return myNumGroups; }
+
+  int getNumRepeats() { return myNumRepeats; }
+
+  int getNumNodes() { return myNodes.length; }
+
+  Node[] getNodes() { return myNodes; }
+
+  boolean isAutomatonCompatible() { return myAutomatonCompatible; }
+
+  boolean[] getMemoizable() { return myMemoizable; }
+
+  long getMemoizationBudget() { return myMemoizationBudget; }
+
+  MatchBudget getMatchBudget() { return myMatchBudget; }
+
+  String getLiteralPrefix() { return myLiteralPrefix; }
+
+  LazyDfa getLazyDfa() { return myLazyDfa; }
+
+  CompiledDfa getCompiledDfa() { return myCompiledDfa; }
+
+  GeneratedDfa getGeneratedDfa() { return myGeneratedDfa; }
+
+  int getConfigVersion() { return myConfigVersion; }
+
+  /** Same as matches(CharSequence), kept for binary compatibility with the clients compiled against it */
+  public boolean matches(String str) {
+    return matches((CharSequence) str);
+  }
+
+  /**
+   * Matches regex against String without explicitly using Matcher object. It's safe to call concurrently: each
+   * thread reuses its own Matcher.
+   */
+  public boolean matches(CharSequence str) {
+    Matcher matcher = myThreadMatchers.get();
+    if (matcher.getConfigVersion() != myConfigVersion) {
+      matcher.configure(this);
+    }
+    return matcher.matches(str);
+  }
+
+  /**
+   * Returns the predicate matching the whole sequence, which can be used by concurrent threads, e.g. for filtering
+   * parallel streams: each thread reuses its own Matcher.
+   */
+  public Predicate<CharSequence> asPredicate() {
+    return new Predicate<CharSequence>() {
+      @Override
+      public boolean test(CharSequence str) {
+        return matches(str);
+      }
+    };
+  }
+
+  /** Matches the strings in parallel on the common fork-join pool, see matchAll(List, ExecutorService) */
+  public BitSet matchAll(List<? extends CharSequence> strs) {
+    return matchAll(strs, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Matches the strings in parallel on the executor (e.g. a fork-join pool or a virtual thread executor), returns
+   * the set of indices of the matching ones. The list is split into batches, each of them is matched by a single
+   * task with its own Matcher. The list should support fast random access.
+   */
+  public BitSet matchAll(final List<? extends CharSequence> strs, ExecutorService executor) {
+    int parallelism = ((executor instanceof ForkJoinPool) ?
+        ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors());
+    int numBatches = BATCHES_PER_THREAD * parallelism;
+    int batchSize = Math.max(MIN_BATCH_SIZE, (strs.size() + numBatches - 1) / numBatches);
+    if (strs.size() <= batchSize) {
+      return matchBatch(strs, 0, strs.size());
+    }
+    /* the matches of a batch are indexed from its beginning */
+    List<Future<BitSet>> batches = new ArrayList<Future<BitSet>>();
+    for (int begin = 0; begin < strs.size(); begin += batchSize) {
+      final int batchBegin = begin;
+      final int batchEnd = Math.min(begin + batchSize, strs.size());
+      batches.add(executor.submit(new Callable<BitSet>() {
+        @Override
+        public BitSet call() {
+          return matchBatch(strs, batchBegin, batchEnd);
+        }
+      }));
+    }
+    BitSet matched = new BitSet(strs.size());
+    try {
+      for (int i = 0; i < batches.size(); ++i) {
+        BitSet batchMatched = batches.get(i).get();
+        for (int j = batchMatched.nextSetBit(0); j >= 0; j = batchMatched.nextSetBit(j + 1)) {
+          matched.set(i * batchSize + j);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while matching", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+    return matched;
+  }
+
+  /**
+   * Matches the strings from begin to end (exclusive) with a single Matcher, returns the set of the indices of
+   * the matching ones relative to begin
+   */
+  private BitSet matchBatch(List<? extends CharSequence> strs, int begin, int end) {
+    Matcher matcher = matcher();
+    BitSet matched = new BitSet(end - begin);
+    for (int i = begin; i < end; ++i) {
+      if (matcher.matches(strs.get(i))) {
+        matched.set(i - begin);
+      }
+    }
+    return matched;
+  }
+
+  /** Marks the regex as shared by the users of a RegexCache, its settings are final afterwards */
+  void setShared() {
+    myShared = true;
+  }
+
+  private void checkNotShared() {
+    if (myShared) {
+      throw new UnsupportedOperationException("Regex shared by the compile cache can't be reconfigured: " +
+          myRegexString);
+    }
+  }
+
+  /** Makes the Matchers reused by matches(CharSequence) take the current settings on their next use */
+  private void resetThreadMatchers() {
+    ++myConfigVersion;
+  }
+
+  // TODO: grammar-based parser
+  /** Constructs graph representation of regex */
+  private void parse(String regex) throws RegexSyntaxException {
+    RegexStringProcessor processor = new RegexStringProcessor(regex);
+    Node endNode = myEndNode;
+    Node termBeginNode = myStartNode;
+    int maxGroupRecallId = 0;
+
+    /* used for '|' operator, indicate the beginning of current group */
+    Stack<Node> groupStartNodeStack = new Stack<Node>();
+
+    /* myStartNode and endNode represent group zero (matching whole string) */
+    groupStartNodeStack.push(myStartNode);
+
+    /* used for '|' operator, indicate the end of current group */
+    Stack<Node> groupEndNodeStack = new Stack<Node>();
+    groupEndNodeStack.push(endNode);
+
+    /* used for quantifiers, indicate position before the start of current group */
+    Stack<Node> openGroupNodeStack = new Stack<Node>();
+
+    /* used for quantifiers, indicate the first node of current group */
+    Stack<Node> groupFirstNodeStack = new Stack<Node>();
+
+    /* used for possessive quantifiers, indicate the position of current group and whether it's atomic */
+    Stack<Integer> groupPosStack = new Stack<Integer>();
+    Stack<Boolean> atomicGroupStack = new Stack<Boolean>();
+    int numOpenAtomicGroups = 0;
+    boolean escaped = false;
+
+    while (processor.hasNext()) {
+      Node termEndNode;
+
+      /* the node termBeginNode points to in order to enter the term */
+      Node termFirstNode = null;
+
+      /* position of the opening bracket if the term is a group */
+      int termGroupPos = -1;
+      boolean quantifierApplicable = true;
+
+      if (escaped) {
+        if (Character.isDigit(processor.peek())) {
+
+          /* group recall */
+          int groupRecallId = processor.nextNumber();
+
+          maxGroupRecallId = Math.max(maxGroupRecallId, groupRecallId);
+          termEndNode = new GroupRecallNode(groupRecallId);
+        } else {
+
+          /* special escape sequences */
+          switch (processor.peek()) {
+            case 'd':
+            case 'D':
+            case 's':
+            case 'S':
+              termEndNode = constructSpecialCharRange(processor.next());
+              break;
+            default:
+              termEndNode = new SymbolNode(processor.next());
+              break;
+          }
+        }
+        termBeginNode.addNextNode(termEndNode);
+        termFirstNode = termEndNode;
+        escaped = false;
+      } else {
+        char ch = processor.next();
+        switch (ch) {
+          case '{':
+          case '*':
+          case '+':
+            throw new RegexSyntaxException("Incorrect use of quantifier", myRegexString);
+          case '|':
+            termBeginNode.addNextNode(groupEndNodeStack.peek());
+            termEndNode = groupStartNodeStack.peek();
+            quantifierApplicable = false;
+            break;
+          case '(':
+            openGroupNodeStack.push(termBeginNode);
+            groupPosStack.push(processor.getPos() - 1);
+            Node openNode;
+            boolean atomic = myPossessiveGroups.contains(processor.getPos() - 1);
+            if (processor.tryNext("?>")) {
+
+              /* atomic group doesn't capture */
+              openNode = new AtomicStartNode(myNumAtomicGroups);
+              groupEndNodeStack.push(new AtomicEndNode(myNumAtomicGroups));
+              ++myNumAtomicGroups;
+              atomic = true;
+            } else {
+              ++myNumGroups;
+              openNode = new OpenGroupNode(myNumGroups);
+              groupEndNodeStack.push(new CloseGroupNode(myNumGroups));
+            }
+            atomicGroupStack.push(atomic);
+            if (atomic) {
+              ++numOpenAtomicGroups;
+            }
+            termBeginNode.addNextNode(openNode);
+            groupFirstNodeStack.push(openNode);
+            termEndNode = new EmptyNode();
+            groupStartNodeStack.push(termEndNode);
+            openNode.addNextNode(termEndNode);
+            quantifierApplicable = false;
+            break;
+          case ')':
+            if (openGroupNodeStack.isEmpty()) {
+              throw new RegexSyntaxException("Unpaired ')'", myRegexString);
+            }
+            termEndNode = groupEndNodeStack.pop();
+            if (atomicGroupStack.pop()) {
+              --numOpenAtomicGroups;
+            }
+            termGroupPos = groupPosStack.pop();
+            termBeginNode.addNextNode(termEndNode);
+            termBeginNode = openGroupNodeStack.pop();
+            termFirstNode = groupFirstNodeStack.pop();
+            groupStartNodeStack.pop();
+            break;
+          case '[':
+            termEndNode = constructCharRangeNode(processor);
+            termBeginNode.addNextNode(termEndNode);
+            termFirstNode = termEndNode;
+            break;
+          case '\\':
+            escaped = true;
+            termEndNode = termBeginNode;
+            quantifierApplicable = false;
+            break;
+          case '.':
+            termEndNode = new AnySymbolNode();
+            termBeginNode.addNextNode(termEndNode);
+            termFirstNode = termEndNode;
+            break;
+          case '^':
+            termEndNode = new AnchorStartStringNode();
+            termBeginNode.addNextNode(termEndNode);
+            quantifierApplicable = false;
+            break;
+          case '$':
+            termEndNode = new AnchorEndStringNode();
+            termBeginNode.addNextNode(termEndNode);
+            quantifierApplicable = false;
+            break;
+          default:
+            termEndNode = new SymbolNode(ch);
+            termBeginNode.addNextNode(termEndNode);
+            termFirstNode = termEndNode;
+            break;
+        }
+      }
+
+      /* quantifier application (if present & applicable) */
+      if (processor.hasNext() && quantifierApplicable) {
+        Node exitNode = new EmptyNode();
+        if (!tryApplyQuantifier(processor, termBeginNode, termFirstNode, termEndNode, exitNode,
+                                numOpenAtomicGroups > 0, termGroupPos)) {
+          termEndNode.addNextNode(exitNode);
+        }
+        termBeginNode = exitNode;
+      } else {
+        termBeginNode = termEndNode;
+      }
+    }
+    if (!openGroupNodeStack.empty()) {
+      throw new RegexSyntaxException("Unpaired '('", myRegexString);
+    }
+    if (maxGroupRecallId > myNumGroups) {
+      throw new RegexSyntaxException("Recall of nonexistent group", myRegexString);
+    }
+    termBeginNode.addNextNode(endNode);
+  }
+
+  private Node constructCharRangeNode(RegexStringProcessor processor) {
+    List<CharRange> ranges = new ArrayList<CharRange>();
+    boolean negate = false;
+
+    /*
+     * first characters that need special treatment: '^' (negates range),
+     * '-' (in first position it acts like literal hyphen, also can be part of a range),
+     * ']' (in first position it acts like literal closing square bracket, also can be part of a range)
+     */
+    char ch = processor.next();
+
+    if (ch == '^') {
+      negate = true;
+
+      /* we need to perform the first character analysis once more (for special '-' and ']' cases) */
+      ch = processor.next();
+    }
+
+    /*
+     * we store parsed char,
+     * if the next char is not '-', we add it as a char, otherwise construct range
+     * if storedChar == null, we don't have any char stored
+     */
+    Character storedChar = ch;
+    boolean asRange = false;
+
+    /* flag of completion */
+    boolean charRangeFinished = false;
+    while (processor.hasNext() && !charRangeFinished) {
+      ch = processor.next();
+      switch (ch) {
+        case ']':
+          if (storedChar != null) {
+            ranges.add(new CharRange(storedChar, storedChar));
+
+            /* if '-' stands right before the closing bracket it's treated as literal '-' */
+            if (asRange) {
+              ranges.add(new CharRange('-', '-'));
+            }
+          }
+          charRangeFinished = true;
+          break;
+        case '-':
+          if ((storedChar == null) || asRange) {
+
+            /* check whether it's the last char in group (like in "[a--]") */
+            if (processor.next() == ']') {
+              if (asRange) {
+                try {
+                  ranges.add(new CharRange(storedChar, '-'));
+                } catch (IllegalArgumentException e) {
+                  throw new RegexSyntaxException("Invalid char range", myRegexString);
+                }
+              } else {
+                ranges.add(new CharRange('-', '-'));
+              }
+              charRangeFinished = true;
+            } else {
+              throw new RegexSyntaxException("Incorrect use of hyphen inside char range", myRegexString);
+            }
+          }
+          asRange = true;
+          break;
+        default:
+          if (storedChar != null) {
+            if (asRange) {
+              try {
+                ranges.add(new CharRange(storedChar, ch));
+              } catch (IllegalArgumentException e) {
+                throw new RegexSyntaxException("Invalid char range", myRegexString);
+              }
+              storedChar = null;
+            } else {
+              ranges.add(new CharRange(storedChar, storedChar));
+              storedChar = ch;
+
+              /* charIsStored remains true */
+            }
+          } else {
+            storedChar = ch;
+          }
+          asRange = false;
+          break;
+      }
+    }
+    if (!charRangeFinished) {
+      throw new RegexSyntaxException("Unclosed char range", myRegexString);
+    }
+    return new CharRangeNode(new CharSet(ranges, negate));
+  }
+
+  /** Constructs special char range (\d, \D, \s or \S) by provided char code of the range (d, D, s or S) */
+  // TODO: add remaining ranges
+  private Node constructSpecialCharRange(char rangeId) {
+    switch (rangeId) {
+      case 'd':
+        return new CharRangeNode(CharSet.DIGITS);
+      case 'D':
+        return new CharRangeNode(CharSet.NON_DIGITS);
+      case 's':
+        return new CharRangeNode(CharSet.SPACES);
+      case 'S':
+        return new CharRangeNode(CharSet.NON_SPACES);
+      default:
+        throw new IllegalArgumentException("Unknown special char range: " + rangeId);
+    }
+  }
+
+  /**
+   * If the quantifier present in the string, construct required nodes and connections for it. The term is inside
+   * an atomic group if inAtomicGroup is set, termGroupPos is the position of its opening bracket if it's a group.
+   */
+  private boolean tryApplyQuantifier(RegexStringProcessor processor, Node termBeginNode, Node termFirstNode,
+                                     Node termEndNode, Node exitNode, boolean inAtomicGroup, int termGroupPos)
+      throws RegexSyntaxException {
+    char quantifier = processor.peek();
+    if ((quantifier != '{') && (quantifier != '?') && (quantifier != '*') && (quantifier != '+')) {
+
+      /* don't eat char here, we'll process it later */
+      return false;
+    }
+    processor.next();
+    InfinityRange range = ((quantifier == '{') ? constructInfinityRange(processor) : constructRange(quantifier));
+    if (processor.hasNext() && (processor.peek() == '+')) {
+      processor.next();
+      inAtomicGroup = true;
+      if (termGroupPos >= 0) {
+        myPossessiveGroups.add(termGroupPos);
+      }
+
+      /* possessive quantifier is an atomic group enclosing the quantified term along with the quantifier */
+      Node atomicStartNode = new AtomicStartNode(myNumAtomicGroups);
+      Node atomicEndNode = new AtomicEndNode(myNumAtomicGroups);
+      ++myNumAtomicGroups;
+      termBeginNode.replaceNextNode(termFirstNode, atomicStartNode);
+      atomicStartNode.addNextNode(termFirstNode);
+      atomicEndNode.addNextNode(exitNode);
+      termBeginNode = atomicStartNode;
+      exitNode = atomicEndNode;
+    }
+
+    /*
+     * the quantified term gets its own entry node, otherwise the loops of quantifier would also capture
+     * other edges of termBeginNode (like the other alternatives of the group in "(a|b*)")
+     */
+    Node entryNode = new EmptyNode();
+    termBeginNode.replaceNextNode(termFirstNode, entryNode);
+    entryNode.addNextNode(termFirstNode);
+
+    /*
+     * an atomic group commits to its first success, so an empty iteration of its loop must end the loop at once (as
+     * in Java and Perl), rather than be rejected by the empty loop detection of the Nodes visited at the position by
+     * the previous iteration. Each iteration of the Repeat Nodes is a separate body, which ends the loop if it's
+     * empty, so they count the loops which can iterate with empty string.
+     */
+    if (inAtomicGroup && !range.endIsSet() && !((termFirstNode == termEndNode) && termEndNode.consumesChar())) {
+      applyRepeatNodes(range, entryNode, termEndNode, exitNode);
+      return true;
+    }
+    switch (quantifier) {
+      case '{':
+        applyRangeQuantifier(range, entryNode, termEndNode, exitNode);
+        break;
+      case '?':
+        entryNode.addNextNode(exitNode);
+        termEndNode.addNextNode(exitNode);
+        break;
+      case '*':
+        entryNode.addNextNode(exitNode);
+        /* fall through */
+      case '+':
+        termEndNode.addNextNode(entryNode);
+        termEndNode.addNextNode(exitNode);
+        break;
+    }
+
+    /* the term is still entered unless it's skipped or quantified by a CharRunNode already */
+    if ((termFirstNode == termEndNode) && termEndNode.consumesChar() &&
+        (entryNode.getNextNodes().get(0) == termEndNode)) {
+      Node runNode = new CharRunNode(termEndNode, range);
+      runNode.addNextNode(exitNode);
+      myCharLoops.put(entryNode, runNode);
+    }
+    return true;
+  }
+
+  /** Constructs the range of iterations of '?', '*' or '+' quantifier */
+  private static InfinityRange constructRange(char quantifier) {
+    InfinityRange range = new InfinityRange();
+    range.setBegin((quantifier == '+') ? 1 : 0);
+    if (quantifier == '?') {
+      range.setEnd(1);
+    }
+    return range;
+  }
+
+  /**
+   * Constructs range quantifier by repeating copies of the term: "x{2,4}" is constructed as "xx(x(x)?)?",
+   * "x{2,}" as "xx+", so the graph remains automaton compatible. Terms which are too large to be repeated
+   * are quantified using CharRunNode (single character terms) or counted by the Repeat Nodes instead.
+   */
+  private void applyRangeQuantifier(InfinityRange range, Node entryNode, Node termEndNode, Node exitNode) {
+    int numCopies = (range.endIsSet() ? range.getEnd() : Math.max(range.getBegin(), 1));
+    List<Node> termNodes = collectTermNodes(entryNode);
+    Node termFirstNode = entryNode.getNextNodes().get(0);
+    if (numCopies == 0) {
+
+      /* the term is never matched, thus it's simply skipped */
+      entryNode.replaceNextNode(termFirstNode, exitNode);
+      return;
+    }
+    if (numCopies * termNodes.size() > MAX_REPEATED_NODES) {
+      if ((termFirstNode == termEndNode) && termEndNode.consumesChar()) {
+        Node runNode = new CharRunNode(termEndNode, range);
+        entryNode.replaceNextNode(termFirstNode, runNode);
+        runNode.addNextNode(exitNode);
+        return;
+      }
+      applyRepeatNodes(range, entryNode, termEndNode, exitNode);
+      return;
+    }
+
+    /* all the copies are made before linking, so that they don't contain any edges leading out of the term */
+    Node[] entryNodes = new Node[numCopies];
+    Node[] endNodes = new Node[numCopies];
+    entryNodes[0] = entryNode;
+    endNodes[0] = termEndNode;
+    for (int copyId = 1; copyId < numCopies; ++copyId) {
+      Map<Node, Node> copies = copyTerm(termNodes);
+      entryNodes[copyId] = copies.get(entryNode);
+      endNodes[copyId] = copies.get(termEndNode);
+    }
+    for (int copyId = 0; copyId < numCopies; ++copyId) {
+      if (copyId >= range.getBegin()) {
+
+        /* optional copy, skipping it also skips all the following copies */
+        entryNodes[copyId].addNextNode(exitNode);
+      }
+      if (copyId + 1 < numCopies) {
+        endNodes[copyId].addNextNode(entryNodes[copyId + 1]);
+      } else {
+        if (!range.endIsSet()) {
+          endNodes[copyId].addNextNode(entryNodes[copyId]);
+        }
+        endNodes[copyId].addNextNode(exitNode);
+      }
+    }
+  }
+
+  /** Constructs range quantifier whose iterations are counted by the Repeat Nodes */
+  private void applyRepeatNodes(InfinityRange range, Node entryNode, Node termEndNode, Node exitNode) {
+    Node termFirstNode = entryNode.getNextNodes().get(0);
+    int repeatId = myNumRepeats++;
+    Node startNode = new RepeatStartNode(repeatId);
+    Node repeatEndNode = new RepeatEndNode(repeatId, range);
+    Node loopNode = new RepeatLoopNode(repeatId, range);
+    entryNode.replaceNextNode(termFirstNode, startNode);
+    startNode.addNextNode(termFirstNode);
+    if (range.getBegin() == 0) {
+      startNode.addNextNode(exitNode);
+    }
+    termEndNode.addNextNode(repeatEndNode);
+    repeatEndNode.addNextNode(loopNode);
+    repeatEndNode.addNextNode(exitNode);
+    loopNode.addNextNode(termFirstNode);
+  }
+
+  /** Collects all the Nodes of the term, which is entered through entryNode and isn't linked to the rest of graph yet */
+  private List<Node> collectTermNodes(Node entryNode) {
+    List<Node> termNodes = new ArrayList<Node>();
+    Stack<Node> nodeStack = new Stack<Node>();
+    Map<Node, Boolean> visited = new HashMap<Node, Boolean>();
+    nodeStack.push(entryNode);
+    visited.put(entryNode, true);
+    while (!nodeStack.isEmpty()) {
+      Node node = nodeStack.pop();
+      termNodes.add(node);
+      for (Node nextNode : node.getNextNodes()) {
+        if (!visited.containsKey(nextNode)) {
+          visited.put(nextNode, true);
+          nodeStack.push(nextNode);
+        }
+      }
+    }
+    return termNodes;
+  }
+
+  /** Copies the Nodes of the term along with the edges between them, returns the mapping from originals to copies */
+  private Map<Node, Node> copyTerm(List<Node> termNodes) {
+    Map<Node, Node> copies = new HashMap<Node, Node>();
+    for (Node node : termNodes) {
+      copies.put(node, node.copy());
+    }
+    for (Node node : termNodes) {
+      Node copy = copies.get(node);
+      for (Node nextNode : node.getNextNodes()) {
+        copy.addNextNode(copies.get(nextNode));
+      }
+    }
+    return copies;
+  }
+
+  /** Indexes the graph again after it's changed, the Nodes which became unreachable are dropped */
+  private void reindexNodes() {
+    for (Node node : myNodes) {
+      node.setId(-1);
+    }
+    indexNodes();
+  }
+
+  /** Assigns dense ids to all the Nodes reachable from the start Node and checks their automaton compatibility */
+  private void indexNodes() {
+    List<Node> nodes = new ArrayList<Node>();
+    Stack<Node> nodeStack = new Stack<Node>();
+    myStartNode.setId(nodes.size());
+    nodes.add(myStartNode);
+    nodeStack.push(myStartNode);
+    while (!nodeStack.isEmpty()) {
+      Node node = nodeStack.pop();
+      myAutomatonCompatible &= node.isAutomatonCompatible();
+      for (Node nextNode : node.getNextNodes()) {
+        if (nextNode.getId() < 0) {
+          nextNode.setId(nodes.size());
+          nodes.add(nextNode);
+          nodeStack.push(nextNode);
+        }
+      }
+    }
+
+    /* the end node must be indexed even if it's unreachable */
+    if (myEndNode.getId() < 0) {
+      myEndNode.setId(nodes.size());
+      nodes.add(myEndNode);
+    }
+    myNodes = nodes.toArray(new Node[nodes.size()]);
+  }
+
+  /**
+   * Collects the characters of the single character Nodes which start every path from the start Node: the path
+   * is followed while it doesn't branch, passing the non-consuming Nodes which don't depend on matcher state.
+   */
+  private String findLiteralPrefix() {
+    StringBuilder prefix = new StringBuilder();
+    boolean[] visited = new boolean[myNodes.length];
+    Node node = myStartNode;
+    while (!visited[node.getId()] && (node != myEndNode)) {
+      visited[node.getId()] = true;
+      if (node.literalChar() >= 0) {
+        prefix.append((char) node.literalChar());
+      } else if (node.consumesChar() || !node.isAutomatonCompatible()) {
+        break;
+      }
+      if (node.getNextNodes().size() != 1) {
+        break;
+      }
+      node = node.getNextNodes().get(0);
+    }
+    return prefix.toString();
+  }
+
+  /**
+   * Finds the Nodes from which only path independent Nodes are reachable. Matching from such Node at a given
+   * position doesn't depend on the groups captured or the quantifier iterations made on the way to it, so it can be
+   * explored only once.
+   */
+  private boolean[] findMemoizableNodes() {
+    List<List<Node>> prevNodes = new ArrayList<List<Node>>(myNodes.length);
+    for (int i = 0; i < myNodes.length; ++i) {
+      prevNodes.add(new ArrayList<Node>());
+    }
+    Stack<Node> nodeStack = new Stack<Node>();
+    boolean[] memoizable = new boolean[myNodes.length];
+    for (Node node : myNodes) {
+      for (Node nextNode : node.getNextNodes()) {
+        prevNodes.get(nextNode.getId()).add(node);
+      }
+      memoizable[node.getId()] = true;
+      if (!node.isPathIndependent()) {
+        memoizable[node.getId()] = false;
+        nodeStack.push(node);
+      }
+    }
+    while (!nodeStack.isEmpty()) {
+      for (Node prevNode : prevNodes.get(nodeStack.pop().getId())) {
+        if (memoizable[prevNode.getId()]) {
+          memoizable[prevNode.getId()] = false;
+          nodeStack.push(prevNode);
+        }
+      }
+    }
+    return memoizable;
+  }
+
+  /**
+   * Passes the ids of the body Nodes to each BodyStartNode: the Nodes reachable from it without passing the end of
+   * the body
+   */
+  private void findBodies() {
+    boolean[] visited = new boolean[myNodes.length];
+    Stack<Node> nodeStack = new Stack<Node>();
+    for (Node node : myNodes) {
+      if (!(node instanceof BodyStartNode)) {
+        continue;
+      }
+      BodyStartNode bodyStartNode = (BodyStartNode) node;
+      List<Node> bodyNodes = new ArrayList<Node>();
+      Arrays.fill(visited, false);
+      nodeStack.push(node);
+      visited[node.getId()] = true;
+      while (!nodeStack.isEmpty()) {
+        Node bodyNode = nodeStack.pop();
+        if (bodyStartNode.isBodyEnd(bodyNode)) {
+          continue;
+        }
+        for (Node nextNode : bodyNode.getNextNodes()) {
+          if (!visited[nextNode.getId()]) {
+            visited[nextNode.getId()] = true;
+            bodyNodes.add(nextNode);
+            nodeStack.push(nextNode);
+          }
+        }
+      }
+      int[] bodyNodeIds = new int[bodyNodes.size()];
+      for (int i = 0; i < bodyNodeIds.length; ++i) {
+        bodyNodeIds[i] = bodyNodes.get(i).getId();
+      }
+      bodyStartNode.setBodyNodeIds(bodyNodeIds);
+    }
+  }
+
+  /** Parses range quantifier expression and constructs the InfinityRange for it */
+  private InfinityRange constructInfinityRange(RegexStringProcessor processor) {
+    InfinityRange range = new InfinityRange();
+    range.setBegin(processor.nextNumber());
+    switch (processor.next()) {
+      case ',':
+        if (processor.peek() == '}') {
+          processor.next();
+        } else {
+          try {
+            range.setEnd(processor.nextNumber());
+          } catch (IllegalArgumentException e) {
+            throw new RegexSyntaxException("Invalid range quantifier parameters", myRegexString);
+          }
+          if (processor.next() != '}') {
+            throw new RegexSyntaxException("Malformed range quantifier", myRegexString);
+          }
+        }
+        break;
+      case '}':
+        range.setEnd(range.getBegin());
+        break;
+      default:
+        throw new RegexSyntaxException("Invalid range quantifier", myRegexString);
+    }
+
+    return range;
+  }
+}
@@ -0,0 +1,118 @@
+package com.eviltosha.regexpy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of compiled regexes, safe to use concurrently. The cache is split into segments by the hash of
+ * the regex string, each segment is locked separately and evicts its least recently used regex when it's full, so
+ * threads looking up different regexes rarely contend. Regexes are compiled outside of the locks.
+ * <p>
+ * The cached Regex objects are shared by all the users of the cache, so they can't be reconfigured: setDfaCacheSize,
+ * compileDfa etc throw UnsupportedOperationException. A differently configured regex is constructed by new Regex.
+ */
+public class RegexCache {
+  private static final int MAX_SEGMENTS = 16;
+  /** Small caches are split into fewer segments, so that eviction stays close to LRU of the whole cache */
+  private static final int MIN_SEGMENT_CAPACITY = 64;
+
+  private Segment[] mySegments;
+  private AtomicLong myHitCount = new AtomicLong(0);
+  private AtomicLong myMissCount = new AtomicLong(0);
+  private AtomicLong myEvictionCount = new AtomicLong(0);
+
+  /** Constructs the cache holding approximately capacity regexes (0 disables caching) */
+  public RegexCache(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Negative cache capacity: " + capacity);
+    }
+    int numSegments = Math.max(1, Math.min(MAX_SEGMENTS, capacity / MIN_SEGMENT_CAPACITY));
+    mySegments = new Segment[numSegments];
+    for (int i = 0; i < numSegments; ++i) {
+      mySegments[i] = new Segment((capacity + numSegments - 1) / numSegments, myEvictionCount);
+    }
+  }
+
+  /**
+   * Returns the cached Regex for the string, compiles and caches it if it's absent. Every call is counted either as
+   * a hit or as a miss, the misses are the regexes put into the cache.
+   */
+  public Regex get(String regex) throws RegexSyntaxException {
+    int hash = regex.hashCode();
+    Segment segment = mySegments[((hash ^ (hash >>> 16)) & 0x7fffffff) % mySegments.length];
+    Regex compiledRegex;
+    synchronized (segment) {
+      compiledRegex = segment.get(regex);
+    }
+    if (compiledRegex != null) {
+      myHitCount.incrementAndGet();
+      return compiledRegex;
+    }
+    compiledRegex = new Regex(regex);
+    compiledRegex.setShared();
+    synchronized (segment) {
+      /* another thread could have compiled the same regex meanwhile, then its regex is returned */
+      Regex cachedRegex = segment.get(regex);
+      if (cachedRegex != null) {
+        myHitCount.incrementAndGet();
+        return cachedRegex;
+      }
+      segment.put(regex, compiledRegex);
+    }
+    myMissCount.incrementAndGet();
+    return compiledRegex;
+  }
+
+  public long getHitCount() { return myHitCount.get(); }
+
+  public long getMissCount() { return myMissCount.get(); }
+
+  public long getEvictionCount() { return myEvictionCount.get(); }
+
+  /** Returns the number of the cached regexes */
+  public int size() {
+    int size = 0;
+    for (Segment segment : mySegments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /** Removes all the cached regexes, the counters are kept */
+  public void clear() {
+    for (Segment segment : mySegments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  /**
+   * Map of the regexes in access order, which removes the least recently used regex when it's overfilled and counts
+   * the eviction in the counter shared by the segments of the cache
+   */
+  private static class Segment extends LinkedHashMap<String, Regex> {
+    private static final long serialVersionUID = 1L;
+
+    private final int myCapacity;
+    private final AtomicLong myEvictionCount;
+
+    Segment(int capacity, AtomicLong evictionCount) {
+      super(16, 0.75f, true);
+      myCapacity = capacity;
+      myEvictionCount = evictionCount;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Regex> eldest) {
+      if (size() <= myCapacity) {
+        return false;
+      }
+      myEvictionCount.incrementAndGet();
+      return true;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.eviltosha.regexpy;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JFR event of the construction of a Regex, emitted by RegexEvents */
+@Name("com.eviltosha.regexpy.RegexCompile")
+@Label("Regex Compile")
+@Category("regexpy")
+@Description("Parsing and analysis of a regular expression")
+class RegexCompileEvent extends Event {
+  private static final EventType ourType = EventType.getEventType(RegexCompileEvent.class);
+
+  @Label("Pattern")
+  String pattern;
+
+  @Label("Pattern Length")
+  int patternLength;
+
+  @Label("Compiled")
+  @Description("False if the pattern has a syntax error")
+  boolean compiled;
+
+  @Label("Node Count")
+  int nodeCount;
+
+  @Label("Automaton Compatible")
+  @Description("Whether the pattern is matched by automata rather than by backtracking")
+  boolean automatonCompatible;
+
+  static boolean isTypeEnabled() {
+    return ourType.isEnabled();
+  }
+}
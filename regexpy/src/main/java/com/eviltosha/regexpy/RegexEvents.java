@@ -0,0 +1,80 @@
+package com.eviltosha.regexpy;
+
+/**
+ * Emits the Java Flight Recorder events of the library, RegexCompileEvent and RegexMatchEvent. JFR is optional (it's
+ * missing e.g. from old Java 8 builds and from runtime images without the jdk.jfr module), so the event classes are
+ * loaded only if it's available. While no recording has the events enabled, the cost is a single check per call.
+ */
+class RegexEvents {
+  private static final boolean ourJfrAvailable = isJfrAvailable();
+
+  private RegexEvents() { }
+
+  static boolean isCompileEnabled() {
+    return ourJfrAvailable && RegexCompileEvent.isTypeEnabled();
+  }
+
+  static boolean isMatchEnabled() {
+    return ourJfrAvailable && RegexMatchEvent.isTypeEnabled();
+  }
+
+  /** Builds the regex, emits the event even if the regex is invalid */
+  static void compile(Regex regex) throws RegexSyntaxException {
+    RegexCompileEvent event = new RegexCompileEvent();
+    event.begin();
+    boolean compiled = false;
+    try {
+      regex.build();
+      compiled = true;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.pattern = regex.getRegexString();
+        event.patternLength = regex.getRegexString().length();
+        event.compiled = compiled;
+        if (compiled) {
+          event.nodeCount = regex.getNumNodes();
+          event.automatonCompatible = regex.isAutomatonCompatible();
+        }
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Matches the whole sequence, emits the event if the match takes longer than the threshold of the event (even if
+   * it's aborted because of its budget)
+   */
+  static boolean match(Matcher matcher, CharSequence str) {
+    RegexMatchEvent event = new RegexMatchEvent();
+    event.begin();
+    boolean matched = false;
+    boolean finished = false;
+    try {
+      matched = matcher.matchWhole(str);
+      finished = true;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.pattern = matcher.getRegexString();
+        event.inputLength = str.length();
+        event.matched = matched;
+        event.aborted = !finished;
+        event.engine = matcher.getLastEngine().name();
+        event.commit();
+      }
+    }
+    return matched;
+  }
+
+  private static boolean isJfrAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+}
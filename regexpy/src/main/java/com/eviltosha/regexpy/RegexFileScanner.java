@@ -0,0 +1,424 @@
+package com.eviltosha.regexpy;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scans text files for the lines containing a match of the regex, like grep. The file is split at line boundaries
+ * into chunks, which are memory-mapped and scanned in parallel on a fork-join pool. Each chunk is scanned with its
+ * own Matcher, and the lines are matched in place: no String is created per line, only the matching lines are
+ * turned into Strings by lines(Path). If the regex has a lazy DFA, the lines are searched by the search mode of
+ * the DFA, which is shared by the chunks; otherwise they are searched by the NFA simulation or backtracking.
+ * <p>
+ * Lines are terminated by '\n' (a preceding '\r' isn't a part of the line), which is found in the raw bytes, so
+ * only the charsets encoding ASCII as single bytes (like UTF-8 or ISO-8859-1, unlike UTF-16) are supported.
+ * ISO-8859-1 files are matched directly over the mapped bytes, the lines of the other charsets are decoded into
+ * a buffer reused within the chunk.
+ */
+public class RegexFileScanner {
+  public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+  private static final int SPLIT_BUFFER_SIZE = 8192;
+
+  private Regex myRegex;
+  private Charset myCharset;
+  private ForkJoinPool myPool = ForkJoinPool.commonPool();
+  private int myChunkSize = DEFAULT_CHUNK_SIZE;
+
+  /** Scans UTF-8 files */
+  public RegexFileScanner(Regex regex) {
+    this(regex, StandardCharsets.UTF_8);
+  }
+
+  /** Throws IllegalArgumentException if the charset doesn't encode ASCII as single bytes */
+  public RegexFileScanner(Regex regex, Charset charset) {
+    if (!isAsciiCompatible(charset)) {
+      throw new IllegalArgumentException("Unsupported charset: " + charset);
+    }
+    myRegex = regex;
+    myCharset = charset;
+  }
+
+  /** Sets the pool the chunks are scanned on, the common pool is used by default */
+  public void setPool(ForkJoinPool pool) {
+    myPool = pool;
+  }
+
+  /** Sets the approximate size of the chunks (in bytes), a chunk is extended to the end of its last line */
+  public void setChunkSize(int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+    }
+    myChunkSize = chunkSize;
+  }
+
+  /** Returns the offsets (in bytes) of the lines containing a match, in ascending order */
+  public long[] scan(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      long[] bounds = splitIntoChunks(channel);
+      ScanResult result = myPool.invoke(new ScanTask(channel, bounds, 0, bounds.length - 1, false));
+      return Arrays.copyOf(result.myOffsets, result.mySize);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Returns the lines containing a match, in the order of the file. The chunks are scanned on the pool a few ahead
+   * of the consumed one, so only the matching lines of these chunks are held at a time. The stream should be closed
+   * if it isn't consumed to the end, then the file is closed; I/O errors are thrown as UncheckedIOException.
+   */
+  public Stream<String> lines(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    long[] bounds;
+    try {
+      bounds = splitIntoChunks(channel);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    final LineSpliterator spliterator = new LineSpliterator(channel, bounds);
+    return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+      @Override
+      public void run() {
+        spliterator.close();
+      }
+    });
+  }
+
+  /**
+   * Prints the lines containing a match of the regex (prefixed with the file name if there are several files).
+   * Exits with status 0 if a line is found, 1 if none is found, 2 on error.
+   */
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.err.println("Usage: RegexFileScanner <regex> <file>...");
+      System.exit(2);
+    }
+    RegexFileScanner scanner;
+    try {
+      scanner = new RegexFileScanner(Regex.compile(args[0]));
+    } catch (RegexSyntaxException e) {
+      System.err.println("Invalid regex " + e.getRegex() + ": " + e.getDescription());
+      System.exit(2);
+      return;
+    }
+    PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+    int status = 1;
+    for (int i = 1; i < args.length; ++i) {
+      String prefix = ((args.length > 2) ? args[i] + ":" : "");
+      try {
+        Stream<String> stream = scanner.lines(Paths.get(args[i]));
+        try {
+          Iterator<String> lines = stream.iterator();
+          while (lines.hasNext()) {
+            out.print(prefix);
+            out.println(lines.next());
+            if (status == 1) {
+              status = 0;
+            }
+          }
+        } finally {
+          stream.close();
+        }
+      } catch (IOException e) {
+        System.err.println(args[i] + ": " + e.getMessage());
+        status = 2;
+      } catch (UncheckedIOException e) {
+        System.err.println(args[i] + ": " + e.getCause().getMessage());
+        status = 2;
+      }
+    }
+    out.flush();
+    System.exit(status);
+  }
+
+  /** Whether the charset encodes every ASCII char as the same single byte, so line terminators are found in bytes */
+  private static boolean isAsciiCompatible(Charset charset) {
+    if (!charset.canEncode()) {
+      return false;
+    }
+    char[] ascii = new char[128];
+    for (int i = 0; i < ascii.length; ++i) {
+      ascii[i] = (char) i;
+    }
+    byte[] bytes = new String(ascii).getBytes(charset);
+    if (bytes.length != ascii.length) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; ++i) {
+      if (bytes[i] != i) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the bounds of the chunks: chunk i spans from bounds[i] to bounds[i + 1], every bound is a line start */
+  private long[] splitIntoChunks(FileChannel channel) throws IOException {
+    long size = channel.size();
+    List<Long> bounds = new ArrayList<Long>();
+    bounds.add(0L);
+    ByteBuffer buffer = ByteBuffer.allocate(SPLIT_BUFFER_SIZE);
+    long bound = 0;
+    while (size - bound > myChunkSize) {
+      bound = nextLineStart(channel, bound + myChunkSize, buffer);
+      bounds.add(bound);
+    }
+    if (bound < size) {
+      bounds.add(size);
+    }
+    long[] result = new long[Math.max(bounds.size(), 2)];
+    for (int i = 0; i < bounds.size(); ++i) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  /** Returns the start of the first line beginning at pos or later, or the file size if there's none */
+  private static long nextLineStart(FileChannel channel, long pos, ByteBuffer buffer) throws IOException {
+    /* pos itself is a line start if it follows the line terminator */
+    --pos;
+    while (true) {
+      buffer.clear();
+      int numRead = channel.read(buffer, pos);
+      if (numRead < 0) {
+        return channel.size();
+      }
+      for (int i = 0; i < numRead; ++i) {
+        if (buffer.get(i) == '\n') {
+          return pos + i + 1;
+        }
+      }
+      pos += numRead;
+    }
+  }
+
+  /** Matches the lines of the chunk, the matching ones are collected in the order of the file */
+  private ScanResult scanChunk(FileChannel channel, long begin, long end, boolean collectLines) throws IOException {
+    if (end - begin > Integer.MAX_VALUE) {
+      throw new IOException("Line at " + begin + " is too long to be mapped");
+    }
+    int size = (int) (end - begin);
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, begin, size);
+    LineReader reader = new LineReader(buffer);
+    Matcher matcher = myRegex.matcher();
+    ScanResult result = new ScanResult();
+    int lineStart = 0;
+    while (lineStart < size) {
+      int lineEnd = lineStart;
+      while ((lineEnd < size) && (buffer.get(lineEnd) != '\n')) {
+        ++lineEnd;
+      }
+      int nextLineStart = lineEnd + 1;
+      if ((lineEnd > lineStart) && (buffer.get(lineEnd - 1) == '\r')) {
+        --lineEnd;
+      }
+      CharSequence line = reader.read(lineStart, lineEnd);
+      if (matcher.containsMatch(line)) {
+        result.add(begin + lineStart, (collectLines ? line.toString() : null));
+      }
+      lineStart = nextLineStart;
+    }
+    return result;
+  }
+
+  /** Scans the chunks from first to last (exclusive), splitting the range in halves while it has several chunks */
+  private class ScanTask extends RecursiveTask<ScanResult> {
+    private static final long serialVersionUID = 1L;
+
+    private FileChannel myChannel;
+    private long[] myBounds;
+    private int myFirst;
+    private int myLast;
+    private boolean myCollectLines;
+
+    ScanTask(FileChannel channel, long[] bounds, int first, int last, boolean collectLines) {
+      myChannel = channel;
+      myBounds = bounds;
+      myFirst = first;
+      myLast = last;
+      myCollectLines = collectLines;
+    }
+
+    @Override
+    protected ScanResult compute() {
+      if (myLast - myFirst > 1) {
+        int middle = (myFirst + myLast) >>> 1;
+        ScanTask left = new ScanTask(myChannel, myBounds, myFirst, middle, myCollectLines);
+        ScanTask right = new ScanTask(myChannel, myBounds, middle, myLast, myCollectLines);
+        left.fork();
+        ScanResult rightResult = right.compute();
+        ScanResult result = left.join();
+        result.append(rightResult);
+        return result;
+      }
+      try {
+        return scanChunk(myChannel, myBounds[myFirst], myBounds[myFirst + 1], myCollectLines);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Supplies the matching lines of the chunks in the order of the file: each chunk is scanned by its own task, the
+   * tasks are submitted to the pool as the chunks are consumed, keeping as many of them ahead as the pool is
+   * parallel. The file is closed when the last chunk is consumed or when the spliterator is closed.
+   */
+  private class LineSpliterator extends Spliterators.AbstractSpliterator<String> {
+    private FileChannel myChannel;
+    private long[] myBounds;
+    private int myNextChunk;
+    private ArrayDeque<ScanTask> myTasks = new ArrayDeque<ScanTask>();
+    /* matching lines of the consumed chunk */
+    private List<String> myLines = Collections.emptyList();
+    private int myLineIndex;
+
+    LineSpliterator(FileChannel channel, long[] bounds) {
+      super(Long.MAX_VALUE, ORDERED | NONNULL | IMMUTABLE);
+      myChannel = channel;
+      myBounds = bounds;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+      while (myLineIndex == myLines.size()) {
+        if (!nextChunk()) {
+          return false;
+        }
+      }
+      action.accept(myLines.get(myLineIndex++));
+      return true;
+    }
+
+    /** Takes the lines of the next chunk, returns false (and closes the file) if there are no more chunks */
+    private boolean nextChunk() {
+      while ((myNextChunk < myBounds.length - 1) && (myTasks.size() < myPool.getParallelism())) {
+        ScanTask task = new ScanTask(myChannel, myBounds, myNextChunk, myNextChunk + 1, true);
+        myPool.execute(task);
+        myTasks.add(task);
+        ++myNextChunk;
+      }
+      ScanTask task = myTasks.poll();
+      if (task == null) {
+        close();
+        return false;
+      }
+      try {
+        myLines = task.join().myLines;
+      } catch (UncheckedIOException e) {
+        close();
+        throw e;
+      }
+      myLineIndex = 0;
+      return true;
+    }
+
+    void close() {
+      for (ScanTask task : myTasks) {
+        task.cancel(false);
+      }
+      myTasks.clear();
+      myNextChunk = myBounds.length - 1;
+      try {
+        myChannel.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /** Views the lines of a mapped chunk as CharSequences, the returned line is valid until the next read */
+  private class LineReader {
+    private ByteBuffer myBuffer;
+    /* view of the raw bytes for ISO-8859-1, null for the other charsets */
+    private ByteBufferSequence myLatin1Line;
+    private CharsetDecoder myDecoder;
+    private CharBuffer myDecodedLine;
+
+    LineReader(ByteBuffer buffer) {
+      /* the decoder moves position and limit of the buffer, so it reads a duplicate */
+      myBuffer = buffer.duplicate();
+      if (myCharset.equals(StandardCharsets.ISO_8859_1)) {
+        myLatin1Line = new ByteBufferSequence(myBuffer, 0, 0);
+      } else {
+        myDecoder = myCharset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        myDecodedLine = CharBuffer.allocate(256);
+      }
+    }
+
+    CharSequence read(int start, int end) {
+      if (myLatin1Line != null) {
+        myLatin1Line.reset(myBuffer, start, end - start);
+        return myLatin1Line;
+      }
+      int maxChars = (int) Math.ceil((end - start) * (double) myDecoder.maxCharsPerByte());
+      if (myDecodedLine.capacity() < maxChars) {
+        myDecodedLine = CharBuffer.allocate(Math.max(maxChars, 2 * myDecodedLine.capacity()));
+      }
+      myBuffer.limit(end);
+      myBuffer.position(start);
+      myDecodedLine.clear();
+      myDecoder.reset();
+      myDecoder.decode(myBuffer, myDecodedLine, true);
+      myDecoder.flush(myDecodedLine);
+      myDecodedLine.flip();
+      return myDecodedLine;
+    }
+  }
+
+  /** Offsets of the matching lines (and the lines themselves if they are collected, for a single chunk) */
+  private static class ScanResult {
+    private long[] myOffsets = new long[16];
+    private int mySize;
+    private List<String> myLines = new ArrayList<String>();
+
+    void add(long offset, String line) {
+      if (mySize == myOffsets.length) {
+        myOffsets = Arrays.copyOf(myOffsets, 2 * mySize);
+      }
+      myOffsets[mySize++] = offset;
+      if (line != null) {
+        myLines.add(line);
+      }
+    }
+
+    void append(ScanResult result) {
+      if (mySize + result.mySize > myOffsets.length) {
+        myOffsets = Arrays.copyOf(myOffsets, Math.max(mySize + result.mySize, 2 * myOffsets.length));
+      }
+      System.arraycopy(result.myOffsets, 0, myOffsets, mySize, result.mySize);
+      mySize += result.mySize;
+    }
+  }
+}
@@ -0,0 +1,317 @@
+package com.eviltosha.regexpy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary format of compiled regexes (see Regex.writeTo and Regex.readFrom), so that they are loaded without
+ * parsing and analysis. The format is big-endian: magic number, version, regex string, numbers of groups and
+ * repeats, literal prefix, required literals, Nodes in the order of their ids (each one is its kind followed by its
+ * parameters), their adjacency lists and the id of the end Node. Strings are written as their length followed by
+ * their chars. The configuration of the regex (DFA cache size, compiled DFA, budgets) isn't stored.
+ */
+class RegexFormat {
+  /** "RGXP" */
+  private static final int MAGIC = 0x52475850;
+  /** Incremented on every incompatible change, e.g. a new kind of Node */
+  private static final short VERSION = 1;
+
+  /* kinds of the Nodes */
+  static final byte EMPTY = 0;
+  static final byte OPEN_GROUP = 1;
+  static final byte CLOSE_GROUP = 2;
+  static final byte END = 3;
+  static final byte GROUP_RECALL = 4;
+  static final byte SYMBOL = 5;
+  static final byte LITERAL = 6;
+  static final byte ANY_SYMBOL = 7;
+  static final byte CHAR_RANGE = 8;
+  static final byte ATOMIC_START = 9;
+  static final byte ATOMIC_END = 10;
+  static final byte CHAR_RUN = 11;
+  static final byte REPEAT_START = 12;
+  static final byte REPEAT_END = 13;
+  static final byte REPEAT_LOOP = 14;
+  static final byte ANCHOR_START = 15;
+  static final byte ANCHOR_END = 16;
+
+  private RegexFormat() { }
+
+  static void write(Regex regex, OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+    writeString(out, regex.getRegexString());
+    out.writeInt(regex.getNumGroups());
+    out.writeInt(regex.getNumRepeats());
+    writeString(out, regex.getLiteralPrefix());
+    out.writeInt(regex.getRequiredLiterals().size());
+    for (String literal : regex.getRequiredLiterals()) {
+      writeString(out, literal);
+    }
+    Node[] nodes = regex.getNodes();
+    out.writeInt(nodes.length);
+    for (Node node : nodes) {
+      node.write(out);
+    }
+    for (Node node : nodes) {
+      out.writeInt(node.getNextNodes().size());
+      for (Node nextNode : node.getNextNodes()) {
+        out.writeInt(nextNode.getId());
+      }
+    }
+    out.writeInt(regex.getEndNode().getId());
+    out.flush();
+  }
+
+  /**
+   * Reads the regex at the position of the buffer, advances the position past it. The data is validated before it's
+   * used (counts against the remaining bytes, ids against their ranges), so that corrupted data is rejected with
+   * IllegalArgumentException instead of failing later in the engines.
+   */
+  static Regex read(ByteBuffer buffer) throws IllegalArgumentException {
+    ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    try {
+      Regex regex = readRegex(in);
+      buffer.position(in.position());
+      return regex;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated compiled regex", e);
+    }
+  }
+
+  private static Regex readRegex(ByteBuffer in) {
+    if (in.getInt() != MAGIC) {
+      throw new IllegalArgumentException("Not a compiled regex");
+    }
+    short version = in.getShort();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported compiled regex version: " + version);
+    }
+    String regexString = readString(in);
+    /* every group and every repeat takes at least a char of the regex string */
+    int numGroups = in.getInt();
+    int numRepeats = in.getInt();
+    check((numGroups >= 0) && (numGroups <= regexString.length()));
+    check((numRepeats >= 0) && (numRepeats <= regexString.length()));
+    String literalPrefix = readString(in);
+    int numRequiredLiterals = readCount(in, 4);
+    List<String> requiredLiterals = new ArrayList<String>();
+    for (int i = 0; i < numRequiredLiterals; ++i) {
+      requiredLiterals.add(readString(in));
+    }
+    Node[] nodes = new Node[readCount(in, 1)];
+    check(nodes.length > 0);
+    for (int i = 0; i < nodes.length; ++i) {
+      nodes[i] = readNode(in, numGroups, numRepeats);
+    }
+    for (Node node : nodes) {
+      int numNextNodes = readCount(in, 4);
+      for (int i = 0; i < numNextNodes; ++i) {
+        node.addNextNode(nodes[readId(in, nodes.length)]);
+      }
+    }
+    Node endNode = nodes[readId(in, nodes.length)];
+    check((nodes[0] instanceof OpenGroupNode) && (endNode instanceof EndNode));
+    checkNesting(nodes);
+    return new Regex(regexString, nodes, endNode, numGroups, numRepeats, literalPrefix, requiredLiterals);
+  }
+
+  /**
+   * Checks that the groups and the atomic groups are properly nested on every path from the start Node, as in the
+   * graphs built by the parser: the engines rely on it, e.g. an atomic group is closed by discarding the choice points
+   * up to its barrier. Every Node gets the stack of the groups open before it, all the paths to the Node must agree
+   * on it. The stacks are interned, so that they are compared by their indices.
+   */
+  private static void checkNesting(Node[] nodes) {
+    Map<Node, Integer> nodeIndices = new IdentityHashMap<Node, Integer>();
+    for (int i = 0; i < nodes.length; ++i) {
+      nodeIndices.put(nodes[i], i);
+    }
+    /* stack 0 is empty, the others are their top (group id, or -1 - id of an atomic group) above their parent */
+    List<Integer> stackParents = new ArrayList<Integer>();
+    List<Integer> stackTops = new ArrayList<Integer>();
+    Map<Long, Integer> stacks = new HashMap<Long, Integer>();
+    stackParents.add(-1);
+    stackTops.add(0);
+    int[] nodeStacks = new int[nodes.length];
+    Arrays.fill(nodeStacks, -1);
+    nodeStacks[0] = 0;
+    Deque<Node> queue = new ArrayDeque<Node>();
+    queue.add(nodes[0]);
+    while (!queue.isEmpty()) {
+      Node node = queue.poll();
+      int stack = nodeStacks[nodeIndices.get(node)];
+      if (node instanceof OpenGroupNode) {
+        stack = pushStack(stack, ((OpenGroupNode) node).getGroupId(), stackParents, stackTops, stacks);
+      } else if (node instanceof AtomicStartNode) {
+        stack = pushStack(stack, -1 - ((AtomicStartNode) node).getAtomicId(), stackParents, stackTops, stacks);
+      } else if (node instanceof CloseGroupNode) {
+        check((stack > 0) && (stackTops.get(stack) == ((CloseGroupNode) node).getGroupId()));
+        stack = stackParents.get(stack);
+      } else if (node instanceof AtomicEndNode) {
+        check((stack > 0) && (stackTops.get(stack) == -1 - ((AtomicEndNode) node).getAtomicId()));
+        stack = stackParents.get(stack);
+      }
+      for (Node nextNode : node.getNextNodes()) {
+        int nextIndex = nodeIndices.get(nextNode);
+        if (nodeStacks[nextIndex] < 0) {
+          nodeStacks[nextIndex] = stack;
+          queue.add(nextNode);
+        } else {
+          check(nodeStacks[nextIndex] == stack);
+        }
+      }
+    }
+  }
+
+  private static int pushStack(int parent, int top, List<Integer> stackParents, List<Integer> stackTops,
+                               Map<Long, Integer> stacks) {
+    long key = ((long) parent << 32) | (top & 0xffffffffL);
+    Integer stack = stacks.get(key);
+    if (stack == null) {
+      stack = stackParents.size();
+      stackParents.add(parent);
+      stackTops.add(top);
+      stacks.put(key, stack);
+    }
+    return stack;
+  }
+
+  private static Node readNode(ByteBuffer in, int numGroups, int numRepeats) {
+    byte kind = in.get();
+    switch (kind) {
+      case EMPTY:
+        return new EmptyNode();
+      case OPEN_GROUP:
+        return new OpenGroupNode(readId(in, numGroups + 1));
+      case CLOSE_GROUP:
+        return new CloseGroupNode(readId(in, numGroups + 1));
+      case END:
+        return new EndNode();
+      case GROUP_RECALL:
+        return new GroupRecallNode(readId(in, numGroups + 1));
+      case SYMBOL:
+        return new SymbolNode(in.getChar());
+      case LITERAL:
+        return new LiteralNode(readString(in));
+      case ANY_SYMBOL:
+        return new AnySymbolNode();
+      case CHAR_RANGE:
+        return new CharRangeNode(readCharSet(in));
+      case ATOMIC_START:
+        return new AtomicStartNode(readId(in, Integer.MAX_VALUE));
+      case ATOMIC_END:
+        return new AtomicEndNode(readId(in, Integer.MAX_VALUE));
+      case CHAR_RUN: {
+        InfinityRange range = readRange(in);
+        /* checked before reading, so that nested runs don't recurse */
+        check(in.hasRemaining());
+        byte charKind = in.get(in.position());
+        check((charKind == SYMBOL) || (charKind == ANY_SYMBOL) || (charKind == CHAR_RANGE));
+        return new CharRunNode(readNode(in, numGroups, numRepeats), range);
+      }
+      case REPEAT_START:
+        return new RepeatStartNode(readId(in, numRepeats));
+      case REPEAT_END: {
+        int repeatId = readId(in, numRepeats);
+        return new RepeatEndNode(repeatId, readRange(in));
+      }
+      case REPEAT_LOOP: {
+        int repeatId = readId(in, numRepeats);
+        return new RepeatLoopNode(repeatId, readRange(in));
+      }
+      case ANCHOR_START:
+        return new AnchorStartStringNode();
+      case ANCHOR_END:
+        return new AnchorEndStringNode();
+      default:
+        throw new IllegalArgumentException("Unknown kind of node in compiled regex: " + kind);
+    }
+  }
+
+  /** Reads an id, which must be less than numIds */
+  private static int readId(ByteBuffer in, int numIds) {
+    int id = in.getInt();
+    check((id >= 0) && (id < numIds));
+    return id;
+  }
+
+  /** Reads the number of the following elements, each one takes at least elementSize bytes */
+  private static int readCount(ByteBuffer in, int elementSize) {
+    int count = in.getInt();
+    check((count >= 0) && (count <= in.remaining() / elementSize));
+    return count;
+  }
+
+  private static void check(boolean condition) {
+    if (!condition) {
+      throw new IllegalArgumentException("Malformed compiled regex");
+    }
+  }
+
+  static void writeString(DataOutputStream out, String str) throws IOException {
+    out.writeInt(str.length());
+    out.writeChars(str);
+  }
+
+  private static String readString(ByteBuffer in) {
+    char[] chars = new char[readCount(in, 2)];
+    in.asCharBuffer().get(chars);
+    in.position(in.position() + 2 * chars.length);
+    return new String(chars);
+  }
+
+  static void writeCharSet(DataOutputStream out, CharSet charSet) throws IOException {
+    char[] intervals = charSet.getIntervals();
+    out.writeInt(intervals.length);
+    for (char bound : intervals) {
+      out.writeChar(bound);
+    }
+  }
+
+  private static CharSet readCharSet(ByteBuffer in) {
+    char[] intervals = new char[readCount(in, 2)];
+    in.asCharBuffer().get(intervals);
+    in.position(in.position() + 2 * intervals.length);
+    /* the intervals are sorted and disjoint, as the lookups expect */
+    check(intervals.length % 2 == 0);
+    for (int i = 0; i < intervals.length; i += 2) {
+      check((intervals[i] <= intervals[i + 1]) && ((i == 0) || (intervals[i] > intervals[i - 1])));
+    }
+    return new CharSet(intervals);
+  }
+
+  /* unset bounds are written as -1 */
+  static void writeRange(DataOutputStream out, InfinityRange range) throws IOException {
+    out.writeInt(range.getBegin());
+    out.writeInt(range.getEnd());
+  }
+
+  private static InfinityRange readRange(ByteBuffer in) {
+    InfinityRange range = new InfinityRange();
+    int begin = in.getInt();
+    int end = in.getInt();
+    check((begin >= -1) && (end >= -1) && ((begin == -1) || (end == -1) || (begin <= end)));
+    if (begin >= 0) {
+      range.setBegin(begin);
+    }
+    if (end >= 0) {
+      range.setEnd(end);
+    }
+    return range;
+  }
+}
@@ -0,0 +1,42 @@
+package com.eviltosha.regexpy;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event of a Matcher.matches call taking longer than the threshold, emitted by RegexEvents. The threshold is
+ * configured like the one of any JFR event, e.g. com.eviltosha.regexpy.RegexMatch#threshold=5 ms
+ */
+@Name("com.eviltosha.regexpy.RegexMatch")
+@Label("Regex Match")
+@Category("regexpy")
+@Description("Slow match of a string against a regular expression")
+@Threshold("20 ms")
+class RegexMatchEvent extends Event {
+  private static final EventType ourType = EventType.getEventType(RegexMatchEvent.class);
+
+  @Label("Pattern")
+  String pattern;
+
+  @Label("Input Length")
+  int inputLength;
+
+  @Label("Matched")
+  boolean matched;
+
+  @Label("Aborted")
+  @Description("Whether the match has exceeded its budget")
+  boolean aborted;
+
+  @Label("Engine")
+  String engine;
+
+  static boolean isTypeEnabled() {
+    return ourType.isEnabled();
+  }
+}
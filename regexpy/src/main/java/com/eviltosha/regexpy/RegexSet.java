@@ -0,0 +1,121 @@
+package com.eviltosha.regexpy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of regexes matched against a string at once. The graphs of the regexes are copied into a single graph with
+ * a common start Node and an end Node per regex, which is matched by a single lazy DFA, so the string is scanned
+ * once regardless of the number of regexes. The regexes which aren't automaton compatible (i.e. with group
+ * recalls) can't be combined, they are matched one by one.
+ */
+public class RegexSet {
+  /** Default memory limit of the lazy DFA cache, in bytes (combined graphs are large, so it's larger than Regex's) */
+  public static final long DEFAULT_DFA_CACHE_SIZE = 16 << 20;
+
+  private Regex[] myRegexes;
+  private Node myStartNode = new EmptyNode();
+  private Node[] myNodes;
+  /** Indices of the regexes whose end Nodes are the end Nodes of the combined graph, in ascending order */
+  private int[] myCombinedIndices;
+  /** Maps ids of the Nodes of the combined graph to the indices of the end Nodes (-1 for the other Nodes) */
+  private int[] myEndIndices;
+  /** Indices of the regexes which are matched separately, in ascending order */
+  private int[] mySeparateIndices;
+  private Node[] myEndNodes;
+  private LazyDfa myLazyDfa;
+
+  public RegexSet(String... regexes) throws RegexSyntaxException {
+    this(Arrays.asList(regexes));
+  }
+
+  public RegexSet(List<String> regexes) throws RegexSyntaxException {
+    myRegexes = new Regex[regexes.size()];
+    List<Node> nodes = new ArrayList<Node>();
+    List<Node> endNodes = new ArrayList<Node>();
+    List<Integer> combinedIndices = new ArrayList<Integer>();
+    List<Integer> separateIndices = new ArrayList<Integer>();
+    myStartNode.setId(nodes.size());
+    nodes.add(myStartNode);
+    for (int i = 0; i < myRegexes.length; ++i) {
+      Regex regex = new Regex(regexes.get(i));
+      myRegexes[i] = regex;
+      if (!regex.isAutomatonCompatible()) {
+        separateIndices.add(i);
+        continue;
+      }
+
+      /* the Nodes of the regex are copied with their ids shifted by the number of Nodes already combined */
+      int idOffset = nodes.size();
+      for (Node node : regex.getNodes()) {
+        Node copy = node.copy();
+        copy.setId(idOffset + node.getId());
+        nodes.add(copy);
+      }
+      for (Node node : regex.getNodes()) {
+        for (Node nextNode : node.getNextNodes()) {
+          nodes.get(idOffset + node.getId()).addNextNode(nodes.get(idOffset + nextNode.getId()));
+        }
+      }
+      myStartNode.addNextNode(nodes.get(idOffset + regex.getStartNode().getId()));
+      endNodes.add(nodes.get(idOffset + regex.getEndNode().getId()));
+      combinedIndices.add(i);
+    }
+    myNodes = nodes.toArray(new Node[nodes.size()]);
+    myEndNodes = endNodes.toArray(new Node[endNodes.size()]);
+    myEndIndices = DfaState.endIndices(myEndNodes, myNodes.length);
+    myCombinedIndices = toArray(combinedIndices);
+    mySeparateIndices = toArray(separateIndices);
+    setDfaCacheSize(DEFAULT_DFA_CACHE_SIZE);
+  }
+
+  /** Constructs object RegexSetMatcher, which can be used to match the regexes against Strings. */
+  public RegexSetMatcher matcher() {
+    return new RegexSetMatcher(this);
+  }
+
+  /** Returns the indices of the regexes matching the whole string, in ascending order */
+  public int[] matches(CharSequence str) {
+    return matcher().matches(str);
+  }
+
+  /** Returns the number of the regexes in the set */
+  public int size() { return myRegexes.length; }
+
+  /**
+   * Sets the approximate memory limit (in bytes) of the lazy DFA cache of the combined graph, see
+   * Regex.setDfaCacheSize. Without the DFA, the combined graph is matched by NFA simulation.
+   */
+  public void setDfaCacheSize(long cacheSize) {
+    myLazyDfa = null;
+    if (myEndNodes.length > 0) {
+      LazyDfa lazyDfa = new LazyDfa(myEndNodes, myNodes, cacheSize);
+      if (lazyDfa.isUsable(myNodes.length)) {
+        myLazyDfa = lazyDfa;
+      }
+    }
+  }
+
+  Regex[] getRegexes() { return myRegexes; }
+
+  Node getStartNode() { return myStartNode; }
+
+  int getNumNodes() { return myNodes.length; }
+
+  int[] getCombinedIndices() { return myCombinedIndices; }
+
+  int[] getEndIndices() { return myEndIndices; }
+
+  int[] getSeparateIndices() { return mySeparateIndices; }
+
+  LazyDfa getLazyDfa() { return myLazyDfa; }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; ++i) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+}
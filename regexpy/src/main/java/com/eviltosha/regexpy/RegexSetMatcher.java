@@ -0,0 +1,62 @@
+package com.eviltosha.regexpy;
+
+import java.util.Arrays;
+
+/** A class for matching strings against RegexSet. Multiple matchers for the single RegexSet are allowed. */
+public class RegexSetMatcher {
+  private NfaSimulator myNfaSimulator;
+  /** DFA shared with the other matchers of the set, null if it's disabled */
+  private LazyDfa myLazyDfa;
+  private int[] myCombinedIndices;
+  private int[] myEndIndices;
+  private int[] mySeparateIndices;
+  private Matcher[] mySeparateMatchers;
+  /** Reusable view of the char array region matched by matches(char[], int, int) */
+  private CharArraySequence myRegion;
+
+  RegexSetMatcher(RegexSet regexSet) {
+    /* the combined graph has no single end Node, the accepting end Nodes are found among the alive Nodes */
+    myNfaSimulator = new NfaSimulator(regexSet.getStartNode(), null, regexSet.getNumNodes());
+    myLazyDfa = regexSet.getLazyDfa();
+    myCombinedIndices = regexSet.getCombinedIndices();
+    myEndIndices = regexSet.getEndIndices();
+    mySeparateIndices = regexSet.getSeparateIndices();
+    mySeparateMatchers = new Matcher[mySeparateIndices.length];
+    for (int i = 0; i < mySeparateIndices.length; ++i) {
+      mySeparateMatchers[i] = regexSet.getRegexes()[mySeparateIndices[i]].matcher();
+    }
+  }
+
+  /** Returns the indices of the regexes matching the whole string, in ascending order */
+  public int[] matches(CharSequence str) {
+    int[] acceptedEnds;
+    if (myLazyDfa != null) {
+      acceptedEnds = myLazyDfa.acceptedEnds(str, myNfaSimulator);
+    } else {
+      acceptedEnds = DfaState.acceptedEnds(myNfaSimulator.run(str), myEndIndices);
+    }
+    int[] matchedIndices = new int[acceptedEnds.length + mySeparateIndices.length];
+    int numMatched = 0;
+    for (int acceptedEnd : acceptedEnds) {
+      matchedIndices[numMatched++] = myCombinedIndices[acceptedEnd];
+    }
+    for (int i = 0; i < mySeparateIndices.length; ++i) {
+      if (mySeparateMatchers[i].matches(str)) {
+        matchedIndices[numMatched++] = mySeparateIndices[i];
+      }
+    }
+    matchedIndices = Arrays.copyOf(matchedIndices, numMatched);
+    Arrays.sort(matchedIndices);
+    return matchedIndices;
+  }
+
+  /** Matches the region of the char array without copying it */
+  public int[] matches(char[] chars, int offset, int length) {
+    if (myRegion == null) {
+      myRegion = new CharArraySequence(chars, offset, length);
+    } else {
+      myRegion.reset(chars, offset, length);
+    }
+    return matches(myRegion);
+  }
+}
@@ -14,6 +14,11 @@ class RegexStringProcessor implements Iterator<Character> {
     myPos = 0;
   }
 
+  /** Returns the position of the next char to be processed */
+  public int getPos() {
+    return myPos;
+  }
+
   @Override
   public boolean hasNext() {
     return (myPos < myRegex.length());
@@ -36,6 +41,15 @@ class RegexStringProcessor implements Iterator<Character> {
     return ch;
   }
 
+  /** Consumes the string if the unprocessed part of regex starts with it, returns whether it's consumed */
+  public boolean tryNext(String str) {
+    if (!myRegex.startsWith(str, myPos)) {
+      return false;
+    }
+    myPos += str.length();
+    return true;
+  }
+
   public int nextNumber() throws RegexSyntaxException {
     if (!hasNext() || !Character.isDigit(peek())) {
       throw new RegexSyntaxException("Unexpected input where number expected", myRegex);
@@ -0,0 +1,126 @@
+package com.eviltosha.regexpy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Extraction of literal strings which every match of the regex contains, so the strings lacking any of them can be
+ * rejected without running the engines. A run of single character Nodes makes such a literal if every path from
+ * the start Node to the end Node passes the first Node of the run, and the only consuming Node reachable from each
+ * Node of the run without consuming characters is the next Node of the run.
+ */
+class RequiredLiterals {
+  private static final Comparator<String> LONGEST_FIRST = new Comparator<String>() {
+    @Override
+    public int compare(String literal1, String literal2) {
+      return (literal2.length() - literal1.length());
+    }
+  };
+
+  private Node myStartNode;
+  private Node myEndNode;
+  /* marks of the Nodes visited by the current traversal are equal to myTraversal */
+  private int[] myMarks;
+  private int myTraversal = 0;
+  private Node[] myStack;
+
+  private RequiredLiterals(Node startNode, Node endNode, int numNodes) {
+    myStartNode = startNode;
+    myEndNode = endNode;
+    myMarks = new int[numNodes];
+    myStack = new Node[numNodes];
+  }
+
+  /** Returns the required literals of the graph (none of them is a substring of another), the longest first */
+  static List<String> find(Node startNode, Node endNode, Node[] nodes) {
+    RequiredLiterals analysis = new RequiredLiterals(startNode, endNode, nodes.length);
+    boolean[] inRun = new boolean[nodes.length];
+    List<String> literals = new ArrayList<String>();
+    for (Node node : nodes) {
+      if ((node.literalChar() < 0) || inRun[node.getId()] || !analysis.isRequired(node)) {
+        continue;
+      }
+      StringBuilder literal = new StringBuilder();
+      for (Node runNode = node; (runNode != null) && !inRun[runNode.getId()]; runNode = analysis.nextLiteral(runNode)) {
+        inRun[runNode.getId()] = true;
+        literal.append((char) runNode.literalChar());
+      }
+      literals.add(literal.toString());
+    }
+
+    /* runs started in the middle of other runs are redundant */
+    Collections.sort(literals, LONGEST_FIRST);
+    List<String> requiredLiterals = new ArrayList<String>();
+    for (String literal : literals) {
+      boolean redundant = false;
+      for (String requiredLiteral : requiredLiterals) {
+        redundant |= requiredLiteral.contains(literal);
+      }
+      if (!redundant) {
+        requiredLiterals.add(literal);
+      }
+    }
+    return requiredLiterals;
+  }
+
+  /** Whether every path from the start Node to the end Node passes the Node */
+  private boolean isRequired(Node node) {
+    ++myTraversal;
+    myMarks[node.getId()] = myTraversal;
+    myMarks[myStartNode.getId()] = myTraversal;
+    int stackSize = 0;
+    myStack[stackSize++] = myStartNode;
+    while (stackSize > 0) {
+      Node current = myStack[--stackSize];
+      if (current == myEndNode) {
+        return false;
+      }
+      for (Node nextNode : current.getNextNodes()) {
+        if (myMarks[nextNode.getId()] != myTraversal) {
+          myMarks[nextNode.getId()] = myTraversal;
+          myStack[stackSize++] = nextNode;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the single character Node which is the only consuming Node reachable from the Node without consuming
+   * characters, or null if there's no such Node (or the end Node is reachable)
+   */
+  private Node nextLiteral(Node node) {
+    ++myTraversal;
+    Node nextLiteral = null;
+    int stackSize = 0;
+    for (Node nextNode : node.getNextNodes()) {
+      if (myMarks[nextNode.getId()] != myTraversal) {
+        myMarks[nextNode.getId()] = myTraversal;
+        myStack[stackSize++] = nextNode;
+      }
+    }
+    while (stackSize > 0) {
+      Node current = myStack[--stackSize];
+      /* group recalls consume unknown strings */
+      if ((current == myEndNode) || !current.isAutomatonCompatible()) {
+        return null;
+      }
+      if (current.consumesChar()) {
+        if ((nextLiteral != null) || (current.literalChar() < 0)) {
+          return null;
+        }
+        nextLiteral = current;
+        continue;
+      }
+      for (Node nextNode : current.getNextNodes()) {
+        if (myMarks[nextNode.getId()] != myTraversal) {
+          myMarks[nextNode.getId()] = myTraversal;
+          myStack[stackSize++] = nextNode;
+        }
+      }
+    }
+    return nextLiteral;
+  }
+}
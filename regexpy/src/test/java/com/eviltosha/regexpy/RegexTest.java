@@ -0,0 +1,1371 @@
+package com.eviltosha.regexpy;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for simple Regex.
+ */
+public class RegexTest {
+  // NOTE: I know that multiple asserts in a single test case is a bad practice, but they test a single aspect
+  // in each test case, and use a single regex string, so it's quite convenient here.
+  // Asserts are lacking messages, because in most cases test strings are self-explanatory,
+  // and writing additional messages for every assert is unnecessary work
+  // TODO: it's probably a good idea to create data files for regex and test strings and simply parse data for tests
+
+  // Regular expressions components tests
+  @Test
+  public void testEmptyString() {
+    Regex regex = new Regex("");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(""));
+    assertFalse(matcher.matches(" "));
+  }
+
+  @Test
+  public void testExactString() {
+    Regex regex = new Regex("aba caba");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("aba caba"));
+    assertFalse(matcher.matches("abacaba"));
+    assertFalse(matcher.matches("aba daba"));
+  }
+
+  @Test
+  public void testAsterisk() {
+    Regex regex = new Regex("a*");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(""));
+    assertTrue(matcher.matches("a"));
+    assertTrue(matcher.matches("aaaaaaaaaaaaaa"));
+    assertFalse(matcher.matches("a*"));
+    assertFalse(matcher.matches("aaaaab"));
+  }
+
+  @Test
+  public void testPlus() {
+    Regex regex = new Regex("c+");
+    Matcher matcher = regex.matcher();
+    assertFalse(matcher.matches(""));
+    assertTrue(matcher.matches("c"));
+    assertTrue(matcher.matches("ccccccccccccccc"));
+    assertFalse(matcher.matches("c+"));
+    assertFalse(matcher.matches("cccccb"));
+  }
+
+  @Test
+  public void testEmptyGroup() {
+    Regex regex = new Regex("()");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(""));
+    assertFalse(matcher.matches("()"));
+    assertFalse(matcher.matches("Foo() { bar(123); }"));
+  }
+
+  @Test
+  public void testSimpleGroup() {
+    Regex regex = new Regex("(b*c)d+");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("bcd"));
+    assertTrue(matcher.matches("cdd"));
+    assertTrue(matcher.matches("bbbcd"));
+    assertFalse(matcher.matches("dd"));
+    assertFalse(matcher.matches("(bc)d"));
+  }
+
+  @Test
+  public void testGroupQuantifiers() {
+    Regex regex = new Regex("(b*c)*");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("bbcbc"));
+    assertTrue(matcher.matches(""));
+    assertTrue(matcher.matches("cc"));
+    assertFalse(matcher.matches("bcb"));
+    assertFalse(matcher.matches("(bc)"));
+  }
+
+  @Test
+  public void testNestedGroup() {
+    Regex regex = new Regex("((c*d)+e)*f");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("ccdcddeccdef"));
+    assertTrue(matcher.matches("f"));
+    assertTrue(matcher.matches("def"));
+    assertFalse(matcher.matches("de"));
+    assertFalse(matcher.matches("cef"));
+    assertFalse(matcher.matches("cdedebcef"));
+  }
+
+  @Test
+  public void testSimpleOr() {
+    Regex regex = new Regex("ab|cd");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("ab"));
+    assertTrue(matcher.matches("cd"));
+    assertFalse(matcher.matches(""));
+    assertFalse(matcher.matches("b"));
+    assertFalse(matcher.matches("ab|cd"));
+    assertFalse(matcher.matches("abab"));
+  }
+
+  @Test
+  public void testSimpleOr_2() {
+    Regex regex = new Regex("(b|(c|d)*)+");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("b"));
+    assertTrue(matcher.matches("bc"));
+    assertTrue(matcher.matches("bcd"));
+    assertTrue(matcher.matches("bbb"));
+    assertTrue(matcher.matches("bbcbbdbbcd"));
+    assertTrue(matcher.matches("c"));
+    assertTrue(matcher.matches("dd"));
+    assertTrue(matcher.matches(""));
+  }
+
+  @Test
+  public void testOrEmptyClause() {
+    Regex regex = new Regex("(|a)(||c||)");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(""));
+    assertTrue(matcher.matches("c"));
+    assertTrue(matcher.matches("ac"));
+  }
+
+  @Test
+  public void testExactRangeQuantifier() {
+    Regex regex = new Regex("a{3}");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("aaa"));
+    assertFalse(matcher.matches("aa"));
+    assertFalse(matcher.matches(""));
+    assertFalse(matcher.matches("aaaa"));
+    assertFalse(matcher.matches("a{3}"));
+    assertFalse(matcher.matches("aaab"));
+  }
+
+  @Test
+  public void testSimpleRangeQuantifier() {
+    Regex regex = new Regex("(ab){2,4}");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("abab"));
+    assertTrue(matcher.matches("ababab"));
+    assertFalse(matcher.matches("ab"));
+    assertFalse(matcher.matches("ababababab"));
+    assertFalse(matcher.matches("aab"));
+  }
+
+  @Test
+  public void testOpenRangeQuantifier() {
+    Regex regex = new Regex("(a|b){4,}");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("aaaa"));
+    assertTrue(matcher.matches("bbbbaa"));
+    assertFalse(matcher.matches("aaa"));
+    assertFalse(matcher.matches(""));
+    assertFalse(matcher.matches("aabbc"));
+  }
+
+  @Test
+  public void testZeroRangeQuantifier() {
+    Regex regex = new Regex("a{0,2}");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(""));
+    assertTrue(matcher.matches("aa"));
+    assertFalse(matcher.matches("aaa"));
+  }
+
+  @Test
+  public void testMultiDigitRangeQuantifier() {
+    Regex regex = new Regex("a{1,12}");
+    assertTrue(regex.matches("aaaaaaaaaaaa")); // 12 a's
+    assertFalse(regex.matches("aaaaaaaaaaaaa")); // 13 a's
+  }
+
+  @Test
+  public void testSimpleGroupRecall() {
+    Regex regex = new Regex("(a|b)\\1");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("aa"));
+    assertTrue(matcher.matches("bb"));
+    assertFalse(matcher.matches("ab"));
+    assertFalse(matcher.matches("ba"));
+    assertFalse(matcher.matches("a1"));
+    assertFalse(matcher.matches("a\\1"));
+  }
+
+  @Test
+  public void testMultipleGroupRecall() {
+    Regex regex = new Regex("(a+(b|c*)\\2)\\2\\1");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("aa"));
+    assertTrue(matcher.matches("aaccccccaacccc"));
+    assertTrue(matcher.matches("abbbabb"));
+    assertFalse(matcher.matches("abcca"));
+    assertFalse(matcher.matches("aca"));
+    assertFalse(matcher.matches("abbb"));
+    assertFalse(matcher.matches("abbbacc"));
+  }
+
+  @Test
+  public void testMultiDigitGroupRecall() {
+    Regex regex = new Regex("((((((((((((a))))))))))))\\11"); // 12 nested groups
+    assertTrue(regex.matches("aa"));
+  }
+
+  @Test
+  public void testRecallAfterQuantifier() {
+    Regex regex = new Regex("(\\d|[a-fA-F])*\\1");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("11"));
+    assertTrue(matcher.matches("A13BBB"));
+    assertFalse(matcher.matches("12"));
+    assertFalse(matcher.matches("1A1"));
+    assertFalse(matcher.matches("1A1A"));
+  }
+
+  @Test
+  public void testEmptyRecall() {
+    Regex regex = new Regex("(a*|b)\\1");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(""));
+  }
+
+  @Test
+  public void testRecallInsideDefinition() {
+    Regex regex = new Regex("(a|\\1b)*");
+    Matcher matcher = regex.matcher();
+    assertFalse(matcher.matches("aab"));
+  }
+
+  @Test
+  public void testRecallBeforeDefinition() {
+    Regex regex = new Regex("(\\2*#(a))*");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("#aa#a"));
+  }
+
+  @Test
+  public void testCharRange() {
+    Regex regex = new Regex("[a-p]+");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("abacaba"));
+    assertFalse(matcher.matches("abazaba"));
+  }
+
+  @Test
+  public void testLettersNumbersHyphens() {
+    Regex regex = new Regex("([A-Za-z0-9-]+)");
+    assertTrue(regex.matches("abacaba"));
+    assertTrue(regex.matches("1337-tEXt-w1th-hyph3ns"));
+    assertTrue(regex.matches("89123456700"));
+    assertFalse(regex.matches("+79123456700"));
+    assertFalse(regex.matches("[123]"));
+    assertFalse(regex.matches("text with spaces"));
+  }
+
+  @Test
+  public void testNegateHyphenCharRange() {
+    Regex regex = new Regex("[^--b]");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("+"));
+    assertFalse(matcher.matches("a"));
+  }
+
+  @Test
+  public void testDoubleHyphenCharRange() {
+    Regex regex = new Regex("[--]");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("-"));
+  }
+
+  @Test
+  public void testEscapingInsideCharRange() {
+    Regex regex = new Regex("[\\]]");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("\\]"));
+  }
+
+  @Test
+  public void testFirstPosCloseBracketCharRange() {
+    Regex regex = new Regex("[]]");
+    assertTrue(regex.matches("]"));
+  }
+
+  @Test
+  public void testBracketInCharRange() {
+    Regex regex = new Regex("([)])");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(")"));
+  }
+
+  @Test
+  public void testSimpleDot() {
+    Regex regex = new Regex("(.)(.)");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(" \t"));
+    assertTrue(matcher.matches(".."));
+    assertFalse(matcher.matches("Boobs!"));
+    assertFalse(matcher.matches("a"));
+    assertFalse(matcher.matches(". ."));
+  }
+
+  @Test
+  public void testQuestionMark() {
+    Regex regex = new Regex(".?[abd-wyz]?");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(""));
+    assertTrue(matcher.matches("$"));
+    assertTrue(matcher.matches("ab"));
+    assertFalse(matcher.matches("ac"));
+    assertFalse(matcher.matches("abc"));
+  }
+
+  @Test
+  public void testEscapedCloseBracket() {
+    Regex regex = new Regex("(\\))");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(")"));
+  }
+
+  @Test
+  public void testEscapedBrackets() {
+    Regex regex = new Regex("\\)\\]\\}");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(")]}"));
+  }
+
+  @Test
+  public void testBackslashEscape() {
+    Regex regex = new Regex("\\\\");
+    assertTrue(regex.matches("\\"));
+  }
+
+  @Test
+  public void testCloseSquareBracket() {
+    Regex regex = new Regex("(])");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("]"));
+  }
+
+  @Test
+  public void testCloseBrace() {
+    Regex regex = new Regex("a}");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("a}"));
+  }
+
+  @Test
+  public void testDates() {
+    // Date dd/mm/yyyy, or any mix
+    Regex regex = new Regex("(0[1-9]|[1-2]\\d|3[01])/(0[1-9]|1[012])/(\\d{4})");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("31/12/2006"));
+    assertTrue(matcher.matches("02/09/0002")); // weird year, I know
+    assertFalse(matcher.matches("2/09/2006"));
+    assertFalse(matcher.matches("32/10/2006"));
+    assertFalse(matcher.matches("02/09/206"));
+  }
+
+  @Test
+  public void testWhiteSpaceCharRanges() {
+    Regex regex = new Regex("\\S{3}\\s\\S+");
+    assertTrue(regex.matches("aba caba"));
+    assertFalse(regex.matches("aba caba "));
+  }
+
+  @Test
+  public void testSimpleAnchors() {
+    Regex regex = new Regex("^abc$");
+    assertTrue(regex.matches("abc"));
+    assertFalse(regex.matches("^abc$"));
+  }
+
+  @Test
+  public void testSimpleAnchorsFalse() {
+    Regex regex = new Regex("ab$cd");
+    assertFalse(regex.matches("abcd"));
+  }
+
+  @Test
+  public void testUsefulDollarAnchor() {
+    Regex regex = new Regex("(b$|c)a*");
+    assertTrue(regex.matches("b"));
+    assertFalse(regex.matches("ba"));
+  }
+
+  @Test
+  public void testUsefulCapAnchor() {
+    Regex regex = new Regex("a*^c");
+    assertTrue(regex.matches("c"));
+    assertFalse(regex.matches("ac"));
+  }
+
+  @Test
+  public void testMultipleMatchers() {
+    Regex regex = new Regex("a*(b|c)");
+    Matcher matcher1 = regex.matcher();
+    Matcher matcher2 = regex.matcher();
+    assertTrue(matcher1.matches("ab"));
+    assertFalse(regex.matches("abc"));
+    Matcher matcher3 = regex.matcher();
+    assertFalse(matcher3.matches("bb"));
+    assertTrue(matcher2.matches("b"));
+  }
+
+  @Test
+  public void testConcurrentMatchers() throws InterruptedException {
+    final Regex regex = new Regex("(\\d{1,3}\\.){3}\\d{1,3}");
+    final boolean[] failed = new boolean[1];
+    Thread[] threads = new Thread[4];
+    for (int threadId = 0; threadId < threads.length; ++threadId) {
+      threads[threadId] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Matcher matcher = regex.matcher();
+          for (int i = 0; i < 1000; ++i) {
+            if (!matcher.matches("192.168." + (i % 256) + ".1") || matcher.matches("192.168." + i + "a.1")) {
+              failed[0] = true;
+            }
+          }
+        }
+      });
+      threads[threadId].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertFalse(failed[0]);
+  }
+
+  @Test
+  public void testSmallDfaCache() {
+    Regex regex = new Regex("[a-c]*a[a-c]{6}");
+    regex.setDfaCacheSize(2048);
+    assertTrue(regex.matches("cbacbabbbbbb"));
+    assertTrue(regex.matches("aaaaaaa"));
+    assertFalse(regex.matches("abcbcbcbcbcbcbbcbbbb"));
+    regex.setDfaCacheSize(0);
+    assertTrue(regex.matches("cbacbabbbbbb"));
+    assertFalse(regex.matches("abcbcbcbcbcbcbbcbbbb"));
+  }
+
+  @Test
+  public void testCompiledDfa() {
+    Regex regex = new Regex("(0[1-9]|[1-2]\\d|3[01])/(0[1-9]|1[012])/(\\d{4})");
+    assertTrue(regex.compileDfa(1000));
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("31/12/2006"));
+    assertFalse(matcher.matches("32/10/2006"));
+    assertFalse(matcher.matches("02/09/206"));
+    assertFalse(matcher.matches(""));
+  }
+
+  @Test
+  public void testCompiledDfaMinimization() {
+    Regex regex = new Regex("(a|b)*abb");
+    assertTrue(regex.compileDfa(1000));
+    /* 4 states of the classic minimal DFA plus the dead state */
+    assertEquals(5, regex.getCompiledDfa().getNumStates());
+    assertTrue(regex.matches("babaabb"));
+    assertFalse(regex.matches("abba"));
+  }
+
+  @Test
+  public void testCompiledDfaStateLimit() {
+    Regex regex = new Regex("[ab]*a[ab]{10}");
+    assertFalse(regex.compileDfa(100));
+    assertFalse(new Regex("(a)\\1").compileDfa(100));
+    assertTrue(regex.matches("bbbabbbbbbbbbb"));
+    assertFalse(regex.matches("bbbbbbbbbbbbbb"));
+  }
+
+  @Test
+  public void testLongStringBacktracking() {
+    /* group recall requires backtracking */
+    Regex regex = new Regex("(a)\\1*b?");
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 500000; ++i) {
+      builder.append('a');
+    }
+    assertTrue(regex.matches(builder.toString()));
+    assertFalse(regex.matches(builder.append("bb").toString()));
+  }
+
+  @Test
+  public void testEmptyLoopBacktracking() {
+    Regex regex = new Regex("(a)([^a]?[^a]*|)*\\1");
+    assertTrue(regex.matches("acbbba"));
+    assertFalse(regex.matches("acbabb"));
+  }
+
+  @Test
+  public void testQuantifiedAlternative() {
+    Regex regex = new Regex("(a|b*)");
+    assertTrue(regex.matches("bbb"));
+    assertFalse(regex.matches("ba"));
+    assertFalse(regex.matches("ab"));
+  }
+
+  @Test
+  public void testRangeQuantifierIterations() {
+    Regex regex = new Regex("(a|ab){2}");
+    assertTrue(regex.matches("abab"));
+    assertTrue(regex.matches("aab"));
+    assertFalse(regex.matches("ababa"));
+  }
+
+  @Test
+  public void testLargeRangeQuantifier() {
+    Regex regex = new Regex("(ab){1,2000}c");
+    assertTrue(regex.matches("ababc"));
+    assertFalse(regex.matches("abac"));
+  }
+
+  @Test
+  public void testNestedLargeRangeQuantifiers() {
+    /* the iterations of the inner quantifier are counted anew in each iteration of the outer one */
+    Regex regex = new Regex("(x(ab){500,600}){2}");
+    StringBuilder builder = new StringBuilder("x");
+    for (int i = 0; i < 500; ++i) {
+      builder.append("ab");
+    }
+    String iteration = builder.toString();
+    assertTrue(regex.matches(iteration + iteration));
+    assertFalse(regex.matches(iteration + "xab"));
+    assertTrue(new Regex("(a|){2000}b").matches("aab"));
+  }
+
+  @Test
+  public void testLargeCharRun() {
+    Regex regex = new Regex("[ab]{2,5000}ab");
+    assertTrue(regex.matches("aaaab"));
+    assertFalse(regex.matches("aab"));
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 5002; ++i) {
+      builder.append('a');
+    }
+    assertFalse(regex.matches(builder.append('b').toString()));
+    assertTrue(new Regex("\\d{1,3000}").matches("2024"));
+  }
+
+  @Test
+  public void testCharLoopBacktracking() {
+    /* the group recall makes the regex backtracking, its single character loops are matched as runs */
+    Regex regex = new Regex("(x).*\\1[ab]+c?a{1,2}");
+    assertTrue(regex.matches("xyzxaba"));
+    assertTrue(regex.matches("xxbbbcaa"));
+    assertFalse(regex.matches("xyza"));
+    assertFalse(regex.matches("xxbc"));
+    StringBuilder builder = new StringBuilder("x");
+    for (int i = 0; i < 100000; ++i) {
+      builder.append('y');
+    }
+    assertTrue(regex.matches(builder.append("xba").toString()));
+  }
+
+  @Test(timeout = 1000)
+  public void testPathologicalAlternation() {
+    Regex regex = new Regex("(a|a)*b");
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 100; ++i) {
+      builder.append('a');
+    }
+    assertFalse(regex.matches(builder.toString()));
+    assertTrue(regex.matches(builder.append('b').toString()));
+  }
+
+  @Test(timeout = 1000)
+  public void testMemoizedBacktracking() {
+    Regex regex = new Regex("(x)\\1(a|a)*b");
+    StringBuilder builder = new StringBuilder("xx");
+    for (int i = 0; i < 100; ++i) {
+      builder.append('a');
+    }
+    assertFalse(regex.matches(builder.toString()));
+    assertTrue(regex.matches(builder.append('b').toString()));
+  }
+
+  @Test
+  public void testMemoizationBudget() {
+    Regex regex = new Regex("(a|b)*(x)(a|b)*\\2c");
+    regex.setMemoizationBudget(0);
+    assertTrue(regex.matches("abxbaxc"));
+    assertFalse(regex.matches("abxbac"));
+  }
+
+  @Test
+  public void testPossessiveQuantifiers() {
+    assertFalse(new Regex("a*+a").matches("aaa"));
+    assertTrue(new Regex("a*+b").matches("aaab"));
+    assertFalse(new Regex("[ab]?+b").matches("b"));
+    assertTrue(new Regex("a{1,3}+a").matches("aaaa"));
+    assertFalse(new Regex("a{1,3}+a").matches("aaa"));
+    assertFalse(new Regex("(ab|a)++b").matches("abab"));
+    assertTrue(new Regex("(ab|a)++c").matches("abac"));
+  }
+
+  @Test
+  public void testAtomicGroup() {
+    Regex regex = new Regex("(?>ab|a)c");
+    assertTrue(regex.matches("abc"));
+    assertTrue(regex.matches("ac"));
+    assertFalse(new Regex("(?>a|ab)c").matches("abc"));
+    /* atomic group doesn't capture */
+    assertTrue(new Regex("(?>(a))\\1").matches("aa"));
+    assertFalse(new Regex("a*(?>c*|a)*a*").matches("acac"));
+  }
+
+  @Test(timeout = 1000)
+  public void testPossessiveBacktracking() {
+    Regex regex = new Regex("(x)\\1(?>(a|aa)++)*b");
+    StringBuilder builder = new StringBuilder("xx");
+    for (int i = 0; i < 5000; ++i) {
+      builder.append('a');
+    }
+    assertFalse(regex.matches(builder.toString()));
+    assertTrue(regex.matches(builder.append('b').toString()));
+  }
+
+  @Test
+  public void testPossessiveEmptyIteration() {
+    /* the empty iteration ends the loop, the atomic body commits to it */
+    assertFalse(new Regex("x(a?|b)*+y").matches("xaby"));
+    assertFalse(new Regex("(a?|b)*+").matches("ab"));
+    assertTrue(new Regex("(a?|b)*+").matches("aa"));
+    assertFalse(new Regex("x(?>(a?|b)*)y").matches("xaby"));
+    assertFalse(new Regex("x(a?|b){2,}+y").matches("xaby"));
+    assertFalse(new Regex("x((a?|b)*)?+y").matches("xaby"));
+    assertTrue(new Regex("x((a?|b)*)?+by").matches("xaby"));
+    assertTrue(new Regex("((c*|b|)*(|)*)?+.").matches("cb"));
+    assertFalse(new Regex("((c*|b|)*(|)*)?+.").matches("cbc"));
+
+    Matcher matcher = new Regex("(c*b++)(b{0}(ac?+|()||b{0}(?>a?+.{2}b))++b){1,}").matcher();
+    assertTrue(matcher.find("acbabcb"));
+    assertEquals(1, matcher.start());
+    assertEquals(5, matcher.end());
+  }
+
+  @Test
+  public void testFind() {
+    Matcher matcher = new Regex("ab+c?").matcher();
+    assertTrue(matcher.find("xxabbbcabxab"));
+    assertEquals(2, matcher.start());
+    assertEquals(7, matcher.end());
+    assertTrue(matcher.find(matcher.end()));
+    assertEquals(7, matcher.start());
+    assertEquals(9, matcher.end());
+    assertTrue(matcher.find(9));
+    assertEquals(10, matcher.start());
+    assertEquals(12, matcher.end());
+    assertFalse(matcher.find(11));
+    assertFalse(matcher.find("xyz"));
+  }
+
+  @Test
+  public void testFindLeftmostLongest() {
+    Matcher matcher = new Regex("a|ab|abc|bcde").matcher();
+    assertTrue(matcher.find("xabcde"));
+    assertEquals(1, matcher.start());
+    assertEquals(4, matcher.end());
+    matcher = new Regex("x*").matcher();
+    assertTrue(matcher.find("abc"));
+    assertEquals(0, matcher.start());
+    assertEquals(0, matcher.end());
+  }
+
+  @Test
+  public void testFindAnchors() {
+    Matcher matcher = new Regex("^ab|cd$").matcher();
+    assertTrue(matcher.find("abcdab"));
+    assertEquals(0, matcher.start());
+    assertEquals(2, matcher.end());
+    assertFalse(matcher.find(1));
+    assertTrue(matcher.find("cdcd"));
+    assertEquals(2, matcher.start());
+  }
+
+  @Test
+  public void testFindGroupRecall() {
+    Matcher matcher = new Regex("(a+)b\\1").matcher();
+    assertTrue(matcher.find("xaabaaab"));
+    assertEquals(1, matcher.start());
+    assertEquals(6, matcher.end());
+    assertFalse(matcher.find("abb"));
+    matcher = new Regex("(a|b)\\1|").matcher();
+    assertTrue(matcher.find("abba"));
+    assertEquals(0, matcher.start());
+    assertEquals(0, matcher.end());
+    assertTrue(matcher.find(1));
+    assertEquals(1, matcher.start());
+    assertEquals(3, matcher.end());
+  }
+
+  @Test
+  public void testRequiredLiterals() {
+    assertEquals(Arrays.asList("foo"), new Regex("[a-z]+foo\\d*").getRequiredLiterals());
+    assertEquals(Arrays.asList("ab", "c"), new Regex("ab+c").getRequiredLiterals());
+    assertEquals(Arrays.asList("x"), new Regex("(ab|cd)x(e)?").getRequiredLiterals());
+    assertEquals(Arrays.asList("abcd"), new Regex("a(b)(cd)").getRequiredLiterals());
+    assertTrue(new Regex("(a|b)*").getRequiredLiterals().isEmpty());
+    assertTrue(new Regex("(a)\\1").getRequiredLiterals().contains("a"));
+
+    Regex regex = new Regex("[a-z]+foo\\d*");
+    assertTrue(regex.matches("barfoo12"));
+    assertFalse(regex.matches("barfo12"));
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.find("xfoo foo"));
+    assertFalse(matcher.find(2));
+  }
+
+  @Test
+  public void testCharRangeIntervals() {
+    Regex regex = new Regex("[a-cb-fx\u0400-\u04ffz\u00e9]+");
+    assertTrue(regex.matches("abcdefxz\u00e9\u0400\u0450\u04ff"));
+    assertFalse(regex.matches("g"));
+    assertFalse(regex.matches("y"));
+    assertFalse(regex.matches("\u03ff"));
+    assertFalse(regex.matches("\u0500"));
+    assertFalse(regex.matches("\u00e8"));
+
+    regex = new Regex("[^\u0000-\u0040a-z\uffff]");
+    assertTrue(regex.matches("A"));
+    assertTrue(regex.matches("\u0100"));
+    assertFalse(regex.matches("@"));
+    assertFalse(regex.matches("q"));
+    assertFalse(regex.matches("\uffff"));
+    assertTrue(regex.matches("\ufffe"));
+  }
+
+  @Test
+  public void testCharSequences() {
+    Regex regex = new Regex("(ab)+c");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches(new StringBuilder("abab").append('c')));
+    assertTrue(matcher.matches(CharBuffer.wrap("ababc")));
+    assertTrue(matcher.matches(CharBuffer.wrap("xababcx", 1, 6)));
+
+    char[] chars = "xababcx".toCharArray();
+    assertTrue(matcher.matches(chars, 1, 5));
+    assertFalse(matcher.matches(chars, 0, 6));
+    assertTrue(matcher.find(chars, 2, 5));
+    assertEquals(1, matcher.start());
+    assertEquals(4, matcher.end());
+
+    Matcher recallMatcher = new Regex("^(a+)x\\1$").matcher();
+    chars = "baaxaab".toCharArray();
+    assertTrue(recallMatcher.matches(chars, 1, 5));
+    assertFalse(recallMatcher.matches(chars, 0, 6));
+    assertTrue(recallMatcher.find(new StringBuilder("aaxaa")));
+    assertArrayEquals(new int[] {0, 1}, new RegexSet("a+x", "(a)\\1x").matcher().matches("zaax".toCharArray(), 1, 3));
+  }
+
+  @Test
+  public void testRegexSet() {
+    RegexSet regexSet = new RegexSet("a+b", "[a-c]*", "(a|b)\\1b", "x?", "ab$", "^a.");
+    assertEquals(6, regexSet.size());
+    RegexSetMatcher matcher = regexSet.matcher();
+    assertArrayEquals(new int[] {0, 1, 4, 5}, matcher.matches("ab"));
+    assertArrayEquals(new int[] {0, 1, 2}, matcher.matches("aab"));
+    assertArrayEquals(new int[] {1, 3}, matcher.matches(""));
+    assertArrayEquals(new int[] {}, matcher.matches("abx"));
+    regexSet.setDfaCacheSize(0);
+    assertArrayEquals(new int[] {0, 1, 4, 5}, regexSet.matches("ab"));
+  }
+
+  @Test
+  public void testLargeRegexSet() {
+    List<String> regexes = new ArrayList<String>();
+    for (int i = 0; i < 2000; ++i) {
+      regexes.add("event" + i + "(:[a-z]+)*");
+    }
+    regexes.add("event\\d+.*");
+    RegexSet regexSet = new RegexSet(regexes);
+    assertArrayEquals(new int[] {1234, 2000}, regexSet.matches("event1234:foo:bar"));
+    assertArrayEquals(new int[] {2000}, regexSet.matches("event1234:12"));
+    assertArrayEquals(new int[] {}, regexSet.matches("evnt1"));
+  }
+
+  @Test
+  public void testCompileCache() {
+    Regex regex = Regex.compile("(ab)*c");
+    assertSame(regex, Regex.compile("(ab)*c"));
+    assertTrue(regex.matches("ababc"));
+    try {
+      regex.setMatchBudget(MatchBudget.ofSteps(1));
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      regex.setDfaCacheSize(0);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    assertTrue(new Regex("(ab)*c").compileDfa(100));
+
+    RegexCache cache = new RegexCache(2);
+    Regex regex1 = cache.get("a");
+    cache.get("b");
+    assertSame(regex1, cache.get("a"));
+    cache.get("c");
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+    assertEquals(1, cache.getEvictionCount());
+    assertSame(regex1, cache.get("a"));
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testConcurrentCompileCache() throws InterruptedException {
+    final RegexCache cache = new RegexCache(64);
+    final boolean[] failed = new boolean[1];
+    Thread[] threads = new Thread[8];
+    for (int threadId = 0; threadId < threads.length; ++threadId) {
+      threads[threadId] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; ++i) {
+            if (!cache.get("x" + (i % 100) + "y*").matches("x" + (i % 100) + "yy")) {
+              failed[0] = true;
+            }
+          }
+        }
+      });
+      threads[threadId].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertFalse(failed[0]);
+    assertEquals(80000, cache.getHitCount() + cache.getMissCount());
+    /* the regexes compiled by the threads racing for the same string are counted as the hits */
+    assertEquals(cache.getMissCount() - cache.getEvictionCount(), cache.size());
+    assertTrue(cache.size() <= 64);
+  }
+
+  @Test
+  public void testStreaming() {
+    Regex regex = new Regex("(ab)+c$");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.feed("ab"));
+    assertTrue(matcher.feed("a"));
+    assertTrue(matcher.feed("bc"));
+    assertTrue(matcher.finish());
+    assertTrue(matcher.feed("aba"));
+    assertTrue(matcher.feed("b"));
+    assertFalse(matcher.finish());
+    assertFalse(matcher.feed("x"));
+    assertFalse(matcher.feed("abc"));
+    assertFalse(matcher.finish());
+    assertFalse(matcher.finish());
+    assertTrue(new Regex("a*$").matcher().finish());
+
+    /* every continuation matches */
+    Matcher prefixMatcher = new Regex("ab.*").matcher();
+    assertTrue(prefixMatcher.feed("a"));
+    assertFalse(prefixMatcher.feed("b"));
+    assertTrue(prefixMatcher.finish());
+  }
+
+  @Test
+  public void testStreamingEngines() {
+    Regex nfaRegex = new Regex("(a|b)*bb$");
+    nfaRegex.setDfaCacheSize(0);
+    Regex compiledRegex = new Regex("(a|b)*bb$");
+    compiledRegex.compileDfa(1000);
+    Regex recallRegex = new Regex("(a|b)*(b)\\2");
+    for (Regex regex : new Regex[] {nfaRegex, compiledRegex, recallRegex}) {
+      Matcher matcher = regex.matcher();
+      matcher.feed("abab");
+      matcher.feed("b");
+      assertTrue(matcher.finish());
+      matcher.feed("abb");
+      matcher.feed("a");
+      assertFalse(matcher.finish());
+    }
+  }
+
+  @Test
+  public void testFileScanner() throws IOException {
+    File file = File.createTempFile("regexpy", ".log");
+    file.deleteOnExit();
+    StringBuilder text = new StringBuilder();
+    List<Long> expectedOffsets = new ArrayList<Long>();
+    for (int i = 0; i < 1000; ++i) {
+      if (i % 7 == 3) {
+        expectedOffsets.add((long) text.length());
+        text.append("line ").append(i).append(" ERROR code=").append(i % 100);
+      } else {
+        text.append("line ").append(i).append(" ok");
+      }
+      text.append((i % 2 == 0) ? "\r\n" : "\n");
+    }
+    Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+    RegexFileScanner scanner = new RegexFileScanner(new Regex("ERROR code=\\d+$"), StandardCharsets.ISO_8859_1);
+    scanner.setChunkSize(100);
+    long[] offsets = scanner.scan(file.toPath());
+    assertEquals(expectedOffsets.size(), offsets.length);
+    for (int i = 0; i < offsets.length; ++i) {
+      assertEquals((long) expectedOffsets.get(i), offsets[i]);
+    }
+    Object[] lines = new RegexFileScanner(new Regex("line 99\\d ERROR.*")).lines(file.toPath()).toArray();
+    assertArrayEquals(new Object[] {"line 990 ERROR code=90", "line 997 ERROR code=97"}, lines);
+
+    /* the lines of the chunks come in the order of the file */
+    RegexFileScanner lineScanner = new RegexFileScanner(new Regex("ERROR"));
+    lineScanner.setChunkSize(100);
+    Stream<String> errorLines = lineScanner.lines(file.toPath());
+    try {
+      Iterator<String> iterator = errorLines.iterator();
+      for (int i = 3; i < 1000; i += 7) {
+        assertEquals("line " + i + " ERROR code=" + (i % 100), iterator.next());
+      }
+      assertFalse(iterator.hasNext());
+    } finally {
+      errorLines.close();
+    }
+    assertEquals(2, lineScanner.lines(file.toPath()).limit(2).count());
+  }
+
+  @Test
+  public void testFileScannerSettings() throws IOException {
+    File file = File.createTempFile("regexpy", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "xa\\y\nb\nab\n".getBytes(StandardCharsets.UTF_8));
+    /* the pattern isn't reparsed, so the trailing backslash is accepted as by the regex itself */
+    assertArrayEquals(new long[] {0, 7}, new RegexFileScanner(new Regex("a\\")).scan(file.toPath()));
+    Regex regex = new Regex("^b|y$");
+    regex.setDfaCacheSize(0);
+    assertArrayEquals(new long[] {0, 5}, new RegexFileScanner(regex).scan(file.toPath()));
+  }
+
+  @Test
+  public void testContainsMatch() {
+    String[] regexes = {"^a", "a$", "", "$", "b*", "^$", "ab|cd", "x(a|b)*y", "^(ab)+$", "(a|b)c", "(a|(b))\\2"};
+    String[] strs = {"", "a", "ba", "ab", "xaby", "cd", "abab", "zzcdzz", "xy", "bc", "abb"};
+    for (String regex : regexes) {
+      Matcher matcher = new Regex(regex).matcher();
+      for (String str : strs) {
+        assertEquals(regex + " in " + str, new Regex(regex).matcher().find(str), matcher.containsMatch(str));
+      }
+    }
+  }
+
+  @Test
+  public void testFileScannerDecoding() throws IOException {
+    File file = File.createTempFile("regexpy", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "аб\nвг\n\n".getBytes(StandardCharsets.UTF_8));
+    RegexFileScanner scanner = new RegexFileScanner(new Regex("^[а-в]г$"));
+    scanner.setChunkSize(1);
+    assertArrayEquals(new long[] {5}, scanner.scan(file.toPath()));
+    assertEquals(0, new RegexFileScanner(new Regex("")).scan(File.createTempFile("regexpy", ".txt").toPath()).length);
+    try {
+      new RegexFileScanner(new Regex("a"), StandardCharsets.UTF_16);
+      fail();
+    } catch (IllegalArgumentException e) {
+      /* expected, '\n' isn't a single byte in UTF-16 */
+    }
+  }
+
+  @Test
+  public void testGeneratedClass() {
+    Regex regex = new Regex("[a-zA-Z0-9_.-]+@[a-zA-Z_]+\\.[a-zA-ZЀ-￿]{2,6}");
+    assertTrue(regex.generateClass(100));
+    assertTrue(regex.matches("some-email@example.com"));
+    assertTrue(regex.matches("some-email@example.рф"));
+    assertFalse(regex.matches("someEmail@examplecom"));
+    assertFalse(regex.matches("some-email@example.c"));
+    assertFalse(regex.matches(""));
+
+    Regex anchored = new Regex("^(ab)*.*$");
+    assertTrue(anchored.generateClass(100));
+    assertTrue(anchored.matches(""));
+    assertTrue(anchored.matches("abx\n"));
+    assertFalse(new Regex("(a)\\1").generateClass(100));
+  }
+
+  @Test
+  public void testFusedLiterals() {
+    Regex regex = new Regex("(a)\\1bcde");
+    assertEquals(new Regex("(a)\\1b").getNumNodes(), regex.getNumNodes());
+    int numLiterals = 0;
+    for (Node node : regex.getNodes()) {
+      if (node instanceof LiteralNode) {
+        ++numLiterals;
+      }
+    }
+    assertEquals(1, numLiterals);
+    assertTrue(regex.matches("aabcde"));
+    assertFalse(regex.matches("aabcd"));
+    assertFalse(regex.matches("aabcdf"));
+    assertFalse(regex.matches("abbcde"));
+  }
+
+  @Test
+  public void testUnrecalledGroupsRemoved() {
+    Regex regex = new Regex("(a)(b)\\2");
+    assertEquals(new Regex("a(b)\\1").getNumNodes(), regex.getNumNodes());
+    assertTrue(regex.matches("abb"));
+    assertFalse(regex.matches("aba"));
+    assertFalse(regex.matches("ab"));
+    assertEquals(new Regex("ab").getNumNodes(), new Regex("((a)(b))").getNumNodes());
+  }
+
+  @Test
+  public void testEmptyLoopsAfterOptimization() {
+    Regex regex = new Regex("(a*)*b");
+    assertTrue(regex.matches("b"));
+    assertTrue(regex.matches("aab"));
+    assertFalse(regex.matches("aa"));
+    Regex optional = new Regex("(|a)+");
+    assertTrue(optional.matches(""));
+    assertTrue(optional.matches("aaa"));
+    assertFalse(optional.matches("ab"));
+
+    /* the recalls make the backtracker run them */
+    Regex recalled = new Regex("(x)(a*)*b\\1");
+    assertTrue(recalled.matches("xbx"));
+    assertTrue(recalled.matches("xaabx"));
+    assertFalse(recalled.matches("xaaaaaaaaaaaaaaaaaaaaaaaaaaaaaax"));
+    Regex recalledOptional = new Regex("(x)(|a)+\\1");
+    assertTrue(recalledOptional.matches("xx"));
+    assertTrue(recalledOptional.matches("xaaax"));
+    assertFalse(recalledOptional.matches("xaaaaaaaaaaaaaaaaaaaaaaaaaaaaaay"));
+  }
+
+  @Test
+  public void testMatchAll() throws InterruptedException {
+    Regex regex = new Regex("(\\d+)-(\\d+)");
+    List<String> strs = new ArrayList<String>();
+    for (int i = 0; i < 1000; ++i) {
+      strs.add((i % 3 == 0) ? i + "-" + i : i + "+" + i);
+    }
+    ForkJoinPool pool = new ForkJoinPool(2);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      for (BitSet matched : new BitSet[] {regex.matchAll(strs), regex.matchAll(strs, pool),
+                                          regex.matchAll(strs, executor), regex.matchAll(strs.subList(0, 10))}) {
+        for (int i = 0; i < matched.length(); ++i) {
+          assertEquals(i % 3 == 0, matched.get(i));
+        }
+      }
+      assertEquals(334, regex.matchAll(strs, pool).cardinality());
+    } finally {
+      pool.shutdown();
+      executor.shutdown();
+    }
+    assertEquals(334, strs.parallelStream().filter(regex.asPredicate()).count());
+  }
+
+  @Test
+  public void testMatchStats() {
+    Matcher matcher = new Regex("(a|ab)(c|bcd)\\1{1,3000}d").matcher();
+    matcher.setStatsEnabled(true);
+    assertTrue(matcher.matches("abcdaad"));
+    MatchStats stats = matcher.getStats();
+    assertEquals(MatchStats.Engine.BACKTRACKING, stats.getEngine());
+    assertTrue(stats.getBacktracks() > 0);
+    assertTrue(stats.getNodeVisits() > stats.getBacktracks());
+    assertTrue(stats.getMaxChoicePoints() > 0);
+    assertTrue(stats.getGroupOperations() >= 4);
+    assertTrue(stats.getUndoneChanges() > 0);
+    assertTrue(stats.getRepeatChecks() > 0);
+    assertFalse(matcher.matches("xyz"));
+    assertEquals(MatchStats.Engine.NONE, matcher.getStats().getEngine());
+    assertEquals(0, matcher.getStats().getNodeVisits());
+
+    matcher = new Regex("a+b").matcher();
+    matcher.setStatsEnabled(true);
+    assertTrue(matcher.find("xaab"));
+    assertEquals(MatchStats.Engine.NFA_SIMULATION, matcher.getStats().getEngine());
+    assertTrue(matcher.matches("aab"));
+    assertEquals(MatchStats.Engine.LAZY_DFA, matcher.getStats().getEngine());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMatchStatsDisabled() {
+    Matcher matcher = new Regex("a").matcher();
+    matcher.matches("a");
+    matcher.getStats();
+  }
+
+  @Test(timeout = 5000)
+  public void testMatchBudget() {
+    /* without memoization, the regex takes exponential time */
+    Regex regex = new Regex("(x)\\1(a|a)*b");
+    regex.setMemoizationBudget(0);
+    StringBuilder builder = new StringBuilder("xx");
+    for (int i = 0; i < 100; ++i) {
+      builder.append('a');
+    }
+    builder.append("cb");
+    Matcher matcher = regex.matcher();
+    assertTrue(matcher.matches("xxaab", MatchBudget.ofSteps(1000)));
+    try {
+      matcher.matches(builder, MatchBudget.ofSteps(10000));
+      fail();
+    } catch (MatchBudgetExceededException e) {
+      assertEquals(10000, e.getSteps());
+    }
+    try {
+      matcher.matches(builder, MatchBudget.ofTimeout(50, TimeUnit.MILLISECONDS));
+      fail();
+    } catch (MatchBudgetExceededException e) {
+      assertTrue(e.getSteps() > 0);
+    }
+
+    regex.setMatchBudget(MatchBudget.ofSteps(10000));
+    assertFalse(regex.matches("xxaac"));
+    try {
+      regex.matches(builder);
+      fail();
+    } catch (MatchBudgetExceededException e) {
+      assertEquals("(x)\\1(a|a)*b", e.getRegex());
+    }
+    matcher = regex.matcher();
+    try {
+      matcher.find(builder);
+      fail();
+    } catch (MatchBudgetExceededException e) {
+      // expected
+    }
+    regex.setMatchBudget(MatchBudget.ofSteps(1));
+    assertTrue(regex.matcher().matches("xxaab", MatchBudget.UNLIMITED));
+
+    /* the matcher reused by the thread takes the new budget */
+    try {
+      regex.matches("xxaab");
+      fail();
+    } catch (MatchBudgetExceededException e) {
+      // expected
+    }
+    regex.setMatchBudget(MatchBudget.UNLIMITED);
+    assertTrue(regex.matches("xxaab"));
+  }
+
+  @Test
+  public void testSerialization() throws IOException {
+    String[] patterns = {"(a|b)*abb", "^[^a-c]\\d+$", "(x).*\\1[ab]+c?a{1,2}", "(?>ab|a)c(ab){1,2000}d*+",
+                         "(a+(b|c*)\\2)\\2\\1", "\\S{3}\\s\\S+"};
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (String pattern : patterns) {
+      new Regex(pattern).writeTo(out);
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+    String[] strs = {"", "aabb", "babb", "xd1", "d12", "xyzxaba", "xxbc", "abcababd", "acabdd", "aaccccccaacccc",
+                     "abbbacc", "abc def", "ab cd"};
+    for (String pattern : patterns) {
+      Regex regex = Regex.readFrom(buffer);
+      Regex expected = new Regex(pattern);
+      assertEquals(expected.getRequiredLiterals(), regex.getRequiredLiterals());
+      for (String str : strs) {
+        assertEquals(pattern + " " + str, expected.matches(str), regex.matches(str));
+      }
+    }
+    assertFalse(buffer.hasRemaining());
+    try {
+      Regex.readFrom(ByteBuffer.wrap("(a|b)*abb".getBytes(StandardCharsets.UTF_8)));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCorruptedSerialization() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new Regex("(a)\\1(?>b|bc)[x-z]*+").writeTo(out);
+    new Regex("(ab){1,2000}c").writeTo(out);
+    byte[] bytes = out.toByteArray();
+    String[] strs = {"", "aab", "aabcxy", "ababc", "abc"};
+    for (int i = 0; i < bytes.length; ++i) {
+      for (int bit = 0; bit <= 8; ++bit) {
+        byte[] corrupted = Arrays.copyOf(bytes, (bit < 8) ? bytes.length : i);
+        if (bit < 8) {
+          corrupted[i] ^= 1 << bit;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(corrupted);
+        try {
+          while (buffer.hasRemaining()) {
+            Regex regex = Regex.readFrom(buffer);
+            regex.setMatchBudget(MatchBudget.ofSteps(100000));
+            for (String str : strs) {
+              regex.matches(str);
+              regex.matcher().find(str);
+            }
+          }
+        } catch (IllegalArgumentException e) {
+          // expected
+        } catch (MatchBudgetExceededException e) {
+          // a corrupted repeat range can make it slow, that's fine
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFlightRecorderEvents() throws IOException {
+    Path file = Files.createTempFile("regexpy", ".jfr");
+    Recording recording = new Recording();
+    try {
+      recording.enable("com.eviltosha.regexpy.RegexCompile");
+      recording.enable("com.eviltosha.regexpy.RegexMatch").withThreshold(Duration.ZERO);
+      recording.start();
+      Regex regex = new Regex("(a+)b\\1");
+      assertTrue(regex.matcher().matches("aabaa"));
+      try {
+        new Regex("(a");
+        fail();
+      } catch (RegexSyntaxException e) {
+        // expected
+      }
+      recording.stop();
+      recording.dump(file);
+      List<String> events = new ArrayList<String>();
+      for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+        if (event.getEventType().getName().equals("com.eviltosha.regexpy.RegexCompile")) {
+          events.add(event.getString("pattern") + " " + event.getBoolean("compiled"));
+        } else if (event.getEventType().getName().equals("com.eviltosha.regexpy.RegexMatch")) {
+          assertEquals(5, event.getInt("inputLength"));
+          assertEquals("BACKTRACKING", event.getString("engine"));
+          events.add(event.getString("pattern") + " " + event.getBoolean("matched"));
+        }
+      }
+      assertEquals(Arrays.asList("(a+)b\\1 true", "(a+)b\\1 true", "(a false"), events);
+    } finally {
+      recording.close();
+      Files.delete(file);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNoMatchFound() {
+    Matcher matcher = new Regex("a").matcher();
+    matcher.find("b");
+    matcher.start();
+  }
+
+  // Exceptions tests
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testUnclosedRangeQuantifier() {
+    Regex regex = new Regex("a{");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testEmptyRangeQuantifier() {
+    Regex regex = new Regex("a{}");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testCharsInsideRangeQuantifier() {
+    Regex regex = new Regex("a{2,a3}");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testUnclosedOpenGroup() {
+    Regex regex = new Regex("a(");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testWrongBracketSequence() {
+    Regex regex = new Regex("(()(())()");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testUnclosedCloseGroup() {
+    Regex regex = new Regex("a)");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testEmptyCharRange() {
+    Regex regex = new Regex("[]");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testReverseRangeQuantifier() {
+    Regex regex = new Regex("a{3,2}");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testReverseCharRange() {
+    Regex regex = new Regex("[b-a]");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testReverseCharRangeWithHyphen() {
+    Regex regex = new Regex("[b--]");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testReverseCharRangeWithHyphen_2() {
+    Regex regex = new Regex("[--+]");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testAnchorQuantifier() {
+    Regex regex = new Regex("^*");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testMultipleQuantifiers() {
+    Regex regex = new Regex("a**");
+  }
+
+  @Test(expected = RegexSyntaxException.class)
+  public void testRecallNonexistentGroup() {
+    Regex regex = new Regex("(ab)\\2");
+  }
+
+  // Various tests
+  @Test
+  public void testEmailAddress() {
+    Regex regex = new Regex("[a-zA-Z0-9_.-]+@[a-zA-Z_]+\\.[a-zA-Z]{2,6}");
+    assertTrue(regex.matches("some-email@example.com"));
+    assertFalse(regex.matches("someEmail@examplecom"));
+  }
+
+  @Test
+  public void testTrickyCharRange() {
+    Regex regex = new Regex("[a[^b]]");
+    assertTrue(regex.matches("[]"));
+    assertTrue(regex.matches("^]"));
+    assertTrue(regex.matches("b]"));
+  }
+
+  @Test
+  public void testHtmlTag() {
+    Regex regex = new Regex("\\</?[^>]+\\>");
+    assertTrue(regex.matches("<p>"));
+    assertTrue(regex.matches("</body>"));
+  }
+}